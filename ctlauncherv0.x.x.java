@@ -19,13 +19,25 @@ import java.awt.event.*;
 import java.awt.geom.*;
 import java.awt.image.*;
 import java.io.*;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.net.*;
+import java.net.http.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
 import java.nio.file.*;
 import java.security.*;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.time.LocalTime;
 import java.util.*;
 import java.util.List;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.*;
 import java.util.zip.*;
 import javax.net.ssl.*;
 
@@ -41,11 +53,57 @@ public class CatsCTLauncher extends JFrame {
     private static final String LIBRARIES_DIR = LAUNCHER_DIR + "/libraries";
     private static final String ASSETS_DIR = LAUNCHER_DIR + "/assets";
     private static final String NATIVES_DIR = LAUNCHER_DIR + "/natives";
-    private static final String VERSION_MANIFEST_URL = "https://launchermeta.mojang.com/mc/game/version_manifest.json";
-    private static final String RESOURCES_URL = "https://resources.download.minecraft.net/";
+    private static final String CACHE_DIR = LAUNCHER_DIR + "/cache";
+    // Written into NATIVES_DIR/<version> once its links match the listed native jar hashes
+    private static final String NATIVES_MARKER = ".natives";
+    // Overridable with -Dctlauncher.manifestUrl / -Dctlauncher.resourcesUrl, e.g. to point at a local test server.
+    // Mirrors in front of these (and of the other upstreams) are set up in Mirrors.
+    private static final String VERSION_MANIFEST_URL = System.getProperty("ctlauncher.manifestUrl",
+        "https://launchermeta.mojang.com/mc/game/version_manifest.json");
+    private static final String RESOURCES_URL = withTrailingSlash(System.getProperty("ctlauncher.resourcesUrl",
+        "https://resources.download.minecraft.net/"));
     
     private static final int DOWNLOAD_TIMEOUT = 30000;
     private static final int DOWNLOAD_THREADS = 8;
+    private static final int MIN_DOWNLOADS = Integer.getInteger("ctlauncher.minDownloads", 2);
+    private static final int MAX_DOWNLOADS = Integer.getInteger("ctlauncher.maxDownloads", 64);
+    
+    // Files at least this large (per the JSON "size") are fetched as parallel byte ranges
+    private static final long SEGMENT_THRESHOLD = Long.getLong("ctlauncher.segmentThreshold", 8L << 20);
+    private static final long MIN_SEGMENT_SIZE = 2L << 20;
+    private static final int MAX_SEGMENTS = 8;
+    
+    // Capacity of each stage queue in the streaming asset pipeline
+    private static final int ASSET_QUEUE = 512;
+    // Assets at least this large are scheduled ahead of the small ones
+    private static final long LARGE_ASSET = 256L << 10;
+    // Headroom the disk preflight keeps free beyond what the install needs
+    private static final long DISK_MARGIN = 64L << 20;
+    // How often the window repaints install progress, and how often --install prints it
+    private static final int PROGRESS_REFRESH_MILLIS = 100;
+    private static final long PROGRESS_EVENT_MILLIS = Long.getLong("ctlauncher.progressInterval", 1000);
+    
+    // Small downloads still running after the recent p95 (but at least this long) get a hedge
+    private static final long MIN_HEDGE_DELAY = TimeUnit.MILLISECONDS.toNanos(200);
+    static final LatencyTracker SMALL_LATENCY = new LatencyTracker();
+    static final AtomicInteger HEDGES = new AtomicInteger();
+    
+    // What is installed under LAUNCHER_DIR, so warm launches need no per-file stat
+    static final InstallIndex INSTALL_INDEX = InstallIndex.open(Paths.get(LAUNCHER_DIR, "install.idx"));
+    
+    // Off: trust a file whose size matches. On: re-hash everything (-Dctlauncher.verifyAll=true)
+    static volatile boolean fullVerify = Boolean.getBoolean("ctlauncher.verifyAll");
+    
+    // Shared scheduler for install graph tasks
+    private static final ExecutorService INSTALL_EXECUTOR = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "ctlauncher-install");
+        t.setDaemon(true);
+        return t;
+    });
+    
+    // One thread per download, gated by a limiter that tunes itself to the link
+    private static final ExecutorService DOWNLOAD_EXECUTOR = newDownloadExecutor();
+    static final AdaptiveLimiter DOWNLOAD_LIMITER = new AdaptiveLimiter(DOWNLOAD_THREADS, MIN_DOWNLOADS, MAX_DOWNLOADS);
     
     // ═══════════════════════════════════════════════════════════════════════════════
     // MOJANG THEME COLORS
@@ -86,31 +144,18 @@ public class CatsCTLauncher extends JFrame {
     // ═══════════════════════════════════════════════════════════════════════════════
     // DATA
     // ═══════════════════════════════════════════════════════════════════════════════
-    private Map<String, String> versions = new HashMap<>();
-    private Map<String, List<String>> versionCategories = new LinkedHashMap<>();
+    // Replaced wholesale by the fetch worker and only read on the EDT
+    private volatile VersionCatalog catalog = VersionCatalog.EMPTY;
     private volatile boolean isDownloading = false;
-    private AtomicInteger downloadedFiles = new AtomicInteger(0);
-    private AtomicInteger totalFiles = new AtomicInteger(0);
-    private AtomicInteger failedFiles = new AtomicInteger(0);
     
     // ═══════════════════════════════════════════════════════════════════════════════
     // CONSTRUCTOR
     // ═══════════════════════════════════════════════════════════════════════════════
     public CatsCTLauncher() {
-        initVersionCategories();
         initUI();
         SwingUtilities.invokeLater(this::fetchVersions);
     }
     
-    private void initVersionCategories() {
-        versionCategories.put("Latest Release", new ArrayList<>());
-        versionCategories.put("Latest Snapshot", new ArrayList<>());
-        versionCategories.put("Release", new ArrayList<>());
-        versionCategories.put("Snapshot", new ArrayList<>());
-        versionCategories.put("Old Beta", new ArrayList<>());
-        versionCategories.put("Old Alpha", new ArrayList<>());
-    }
-    
     // ═══════════════════════════════════════════════════════════════════════════════
     // UI INITIALIZATION
     // ═══════════════════════════════════════════════════════════════════════════════
@@ -304,7 +349,7 @@ public class CatsCTLauncher extends JFrame {
         versionSection.add(versionHeader);
         versionSection.add(Box.createVerticalStrut(8));
         
-        categoryCombo = createStyledCombo(versionCategories.keySet().toArray(new String[0]));
+        categoryCombo = createStyledCombo(VersionCatalog.CATEGORIES.toArray(new String[0]));
         categoryCombo.setSelectedItem("Latest Release");
         categoryCombo.addActionListener(e -> updateVersionList());
         versionSection.add(categoryCombo);
@@ -593,166 +638,70 @@ public class CatsCTLauncher extends JFrame {
     private void fetchVersions() {
         statusLabel.setText("Fetching versions...");
         
-        new SwingWorker<Void, Void>() {
+        new SwingWorker<Void, VersionCatalog>() {
+            private String error;
+            
             @Override
             protected Void doInBackground() throws Exception {
+                Path manifest = Paths.get(CACHE_DIR, "version_manifest.json");
+                
+                // Render the cached manifest straight away, then revalidate it
+                byte[] cached = MetadataCache.cached(manifest);
+                if (cached != null) {
+                    try {
+                        publish(VersionCatalog.parse(JsonReader.of(cached)));
+                    } catch (IOException e) {
+                        System.err.println("Ignoring unreadable cached manifest: " + e.getMessage());
+                    }
+                }
+                
                 try {
-                    setupSSL();
-                    
-                    URL url = URI.create(VERSION_MANIFEST_URL).toURL();
-                    HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-                    conn.setConnectTimeout(30000);
-                    conn.setReadTimeout(30000);
-                    conn.setRequestProperty("User-Agent", LAUNCHER_NAME + "/" + LAUNCHER_VERSION);
-                    
-                    BufferedReader reader = new BufferedReader(new InputStreamReader(conn.getInputStream()));
-                    StringBuilder response = new StringBuilder();
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        response.append(line);
+                    MetadataCache.Result result = MetadataCache.fetch(VERSION_MANIFEST_URL, manifest);
+                    if (result.changed()) {
+                        publish(VersionCatalog.parse(JsonReader.of(result.body())));
                     }
-                    reader.close();
-                    
-                    parseVersionManifest(response.toString());
-                    
                 } catch (Exception e) {
                     e.printStackTrace();
-                    SwingUtilities.invokeLater(() -> {
-                        statusLabel.setText("Error: " + e.getMessage());
-                    });
+                    error = e.getMessage();
                 }
                 return null;
             }
             
             @Override
-            protected void done() {
+            protected void process(List<VersionCatalog> snapshots) {
+                catalog = snapshots.get(snapshots.size() - 1);
                 updateVersionList();
-                statusLabel.setText("Loaded " + versions.size() + " versions • Ready to play");
-            }
-        }.execute();
-    }
-    
-    private void setupSSL() throws Exception {
-        TrustManager[] trustAllCerts = new TrustManager[]{
-            new X509TrustManager() {
-                public java.security.cert.X509Certificate[] getAcceptedIssuers() { return null; }
-                public void checkClientTrusted(java.security.cert.X509Certificate[] certs, String authType) {}
-                public void checkServerTrusted(java.security.cert.X509Certificate[] certs, String authType) {}
+                statusLabel.setText("Loaded " + catalog.size() + " versions • Checking for updates...");
             }
-        };
-        
-        SSLContext sc = SSLContext.getInstance("SSL");
-        sc.init(null, trustAllCerts, new java.security.SecureRandom());
-        HttpsURLConnection.setDefaultSSLSocketFactory(sc.getSocketFactory());
-        HttpsURLConnection.setDefaultHostnameVerifier((hostname, session) -> true);
-    }
-    
-    private void parseVersionManifest(String json) {
-        versions.clear();
-        for (List<String> list : versionCategories.values()) {
-            list.clear();
-        }
-        
-        String latestRelease = extractJsonValue(json, "release");
-        String latestSnapshot = extractJsonValue(json, "snapshot");
-        
-        int versionsStart = json.indexOf("\"versions\"");
-        if (versionsStart == -1) return;
-        
-        int arrayStart = json.indexOf("[", versionsStart);
-        int arrayEnd = findMatchingBracket(json, arrayStart);
-        String versionsArray = json.substring(arrayStart, arrayEnd + 1);
-        
-        int pos = 0;
-        while ((pos = versionsArray.indexOf("{", pos)) != -1) {
-            int objEnd = findMatchingBrace(versionsArray, pos);
-            String versionObj = versionsArray.substring(pos, objEnd + 1);
             
-            String id = extractJsonValue(versionObj, "id");
-            String type = extractJsonValue(versionObj, "type");
-            String versionUrl = extractJsonValue(versionObj, "url");
-            
-            if (id != null && versionUrl != null) {
-                versions.put(id, versionUrl);
-                
-                if (id.equals(latestRelease)) {
-                    versionCategories.get("Latest Release").add(id);
-                }
-                if (id.equals(latestSnapshot)) {
-                    versionCategories.get("Latest Snapshot").add(id);
-                }
-                
-                if ("release".equals(type)) {
-                    versionCategories.get("Release").add(id);
-                } else if ("snapshot".equals(type)) {
-                    versionCategories.get("Snapshot").add(id);
-                } else if ("old_beta".equals(type)) {
-                    versionCategories.get("Old Beta").add(id);
-                } else if ("old_alpha".equals(type)) {
-                    versionCategories.get("Old Alpha").add(id);
+            @Override
+            protected void done() {
+                if (error == null) {
+                    statusLabel.setText("Loaded " + catalog.size() + " versions • Ready to play");
+                } else if (catalog.size() > 0) {
+                    statusLabel.setText("Offline • " + catalog.size() + " cached versions • Ready to play");
+                } else {
+                    statusLabel.setText("Error: " + error);
                 }
             }
-            
-            pos = objEnd + 1;
-        }
-    }
-    
-    private String extractJsonValue(String json, String key) {
-        String pattern = "\"" + key + "\"";
-        int keyPos = json.indexOf(pattern);
-        if (keyPos == -1) return null;
-        
-        int colonPos = json.indexOf(":", keyPos);
-        if (colonPos == -1) return null;
-        
-        int valueStart = colonPos + 1;
-        while (valueStart < json.length() && Character.isWhitespace(json.charAt(valueStart))) {
-            valueStart++;
-        }
-        
-        if (valueStart >= json.length()) return null;
-        
-        if (json.charAt(valueStart) == '"') {
-            int valueEnd = json.indexOf("\"", valueStart + 1);
-            if (valueEnd == -1) return null;
-            return json.substring(valueStart + 1, valueEnd);
-        }
-        
-        return null;
-    }
-    
-    private int findMatchingBracket(String s, int start) {
-        int count = 0;
-        for (int i = start; i < s.length(); i++) {
-            if (s.charAt(i) == '[') count++;
-            else if (s.charAt(i) == ']') count--;
-            if (count == 0) return i;
-        }
-        return s.length() - 1;
-    }
-    
-    private int findMatchingBrace(String s, int start) {
-        int count = 0;
-        for (int i = start; i < s.length(); i++) {
-            if (s.charAt(i) == '{') count++;
-            else if (s.charAt(i) == '}') count--;
-            if (count == 0) return i;
-        }
-        return s.length() - 1;
+        }.execute();
     }
     
     private void updateVersionList() {
         String category = (String) categoryCombo.getSelectedItem();
         if (category == null) return;
         
-        List<String> vers = versionCategories.get(category);
+        Object selected = versionCombo.getSelectedItem();
+        List<String> vers = catalog.categories().get(category);
         versionCombo.removeAllItems();
         
         if (vers != null) {
             for (String v : vers) {
                 versionCombo.addItem(v);
             }
-            if (!vers.isEmpty()) {
+            if (vers.contains(selected)) {
+                versionCombo.setSelectedItem(selected);
+            } else if (!vers.isEmpty()) {
                 versionCombo.setSelectedIndex(0);
             }
         }
@@ -770,21 +719,12 @@ public class CatsCTLauncher extends JFrame {
             return;
         }
         
-        String versionUrl = versions.get(version);
+        String versionUrl = catalog.urls().get(version);
         if (versionUrl == null) {
             JOptionPane.showMessageDialog(this, "Version URL not found.", "Error", JOptionPane.ERROR_MESSAGE);
             return;
         }
         
-        // Create directories
-        new File(LAUNCHER_DIR).mkdirs();
-        new File(VERSIONS_DIR).mkdirs();
-        new File(LIBRARIES_DIR).mkdirs();
-        new File(ASSETS_DIR).mkdirs();
-        new File(ASSETS_DIR + "/indexes").mkdirs();
-        new File(ASSETS_DIR + "/objects").mkdirs();
-        new File(NATIVES_DIR).mkdirs();
-        
         String username = validateUsername(usernameInput.getText());
         int ram = ramSlider.getValue();
         
@@ -796,78 +736,40 @@ public class CatsCTLauncher extends JFrame {
         progressLabel.setText("Preparing " + version + "...");
         statusLabel.setText("Downloading game files...");
         
-        new SwingWorker<Boolean, String>() {
-            private String versionJsonContent;
-            private String nativesPath;
+        // The install only bumps counters; the window reads them a few times a second
+        Installer installer = new Installer();
+        javax.swing.Timer refresh = new javax.swing.Timer(PROGRESS_REFRESH_MILLIS,
+            e -> showProgress(installer.progress.snapshot()));
+        refresh.start();
+        
+        new SwingWorker<Boolean, Void>() {
+            private LaunchPlan plan;
+            private Exception failure;
             
             @Override
             protected Boolean doInBackground() throws Exception {
                 try {
-                    setupSSL();
-                    
-                    String versionDir = VERSIONS_DIR + "/" + version;
-                    new File(versionDir).mkdirs();
-                    nativesPath = NATIVES_DIR + "/" + version;
-                    new File(nativesPath).mkdirs();
-                    
-                    // Step 1: Download version JSON
-                    publish("Downloading version info...");
-                    String jsonPath = versionDir + "/" + version + ".json";
-                    if (!new File(jsonPath).exists()) {
-                        downloadFile(versionUrl, jsonPath);
-                    }
-                    versionJsonContent = new String(Files.readAllBytes(Paths.get(jsonPath)));
-                    updateProgress(5);
-                    
-                    // Step 2: Download client JAR
-                    publish("Downloading Minecraft client...");
-                    String jarUrl = extractNestedJsonValue(versionJsonContent, "downloads", "client", "url");
-                    String jarPath = versionDir + "/" + version + ".jar";
-                    if (jarUrl != null && !new File(jarPath).exists()) {
-                        downloadFile(jarUrl, jarPath);
-                    }
-                    updateProgress(10);
-                    
-                    // Step 3: Download libraries
-                    publish("Downloading libraries...");
-                    downloadAllLibraries(versionJsonContent);
-                    updateProgress(30);
-                    
-                    // Step 4: Extract natives
-                    publish("Extracting natives...");
-                    extractNatives(versionJsonContent, nativesPath);
-                    updateProgress(35);
-                    
-                    // Step 5: Download ALL assets
-                    publish("Downloading assets (please wait)...");
-                    downloadAllAssets(versionJsonContent);
-                    updateProgress(100);
-                    
-                    publish("Ready to launch!");
+                    plan = installer.prepare(version, versionUrl);
                     return true;
-                    
                 } catch (Exception e) {
                     e.printStackTrace();
-                    publish("Error: " + e.getMessage());
+                    failure = e;
                     return false;
                 }
             }
             
-            @Override
-            protected void process(List<String> chunks) {
-                if (!chunks.isEmpty()) {
-                    String msg = chunks.get(chunks.size() - 1);
-                    progressLabel.setText(msg);
-                    statusLabel.setText(msg);
-                }
-            }
-            
             @Override
             protected void done() {
                 isDownloading = false;
+                refresh.stop();
+                showProgress(installer.progress.snapshot());
                 try {
                     if (get()) {
-                        launchGame(version, username, ram, nativesPath, versionJsonContent);
+                        launchGame(version, username, ram, plan);
+                    } else if (failure != null) {
+                        JOptionPane.showMessageDialog(CatsCTLauncher.this,
+                            "Failed to prepare game:\n" + failure.getMessage(),
+                            "Launch Error", JOptionPane.ERROR_MESSAGE);
                     }
                 } catch (Exception e) {
                     e.printStackTrace();
@@ -882,601 +784,5137 @@ public class CatsCTLauncher extends JFrame {
         }.execute();
     }
     
-    private void updateProgress(int value) {
-        SwingUtilities.invokeLater(() -> progressBar.setValue(value));
+    private void showProgress(InstallProgress.Snapshot progress) {
+        progressBar.setValue(progress.percent());
+        switch (progress.phase()) {
+            case METADATA -> {
+                progressLabel.setText("Downloading version info...");
+                statusLabel.setText("Downloading version info...");
+            }
+            case DOWNLOADING -> {
+                if (progress.filesTotal() == 0) {
+                    progressLabel.setText("Checking game files...");
+                    statusLabel.setText("Downloading game files...");
+                    return;
+                }
+                long cap = Bandwidth.rate();
+                progressLabel.setText("Downloading " + progress.kind() + "... ("
+                    + progress.filesDone() + "/" + progress.filesTotal() + ")");
+                statusLabel.setText(formatBytes(progress.bytesDone()) + " / " + formatBytes(progress.bytesTotal())
+                    + " • " + formatBytes((long) progress.rate()) + "/s" + (cap > 0 ? " (capped)" : "")
+                    + " • ETA " + (progress.eta() >= 0 ? formatDuration(progress.eta()) : "…")
+                    + " • " + DOWNLOAD_LIMITER.getLimit() + " parallel");
+            }
+            case READY -> {
+                progressLabel.setText("Ready to launch!");
+                statusLabel.setText("Ready to launch!");
+            }
+            case FAILED -> {
+                String msg = "Error: " + progress.detail().lines().findFirst().orElse("");
+                progressLabel.setText(msg);
+                statusLabel.setText(msg);
+            }
+        }
     }
     
     // ═══════════════════════════════════════════════════════════════════════════════
-    // LIBRARY DOWNLOAD
+    // INSTALLER - the download and launch engine, shared by the window and --install
     // ═══════════════════════════════════════════════════════════════════════════════
-    private void downloadAllLibraries(String jsonContent) throws Exception {
-        int libStart = jsonContent.indexOf("\"libraries\"");
-        if (libStart == -1) return;
+    static final class Installer {
+        final InstallProgress progress = new InstallProgress();
         
-        int arrayStart = jsonContent.indexOf("[", libStart);
-        if (arrayStart == -1) return;
-        int arrayEnd = findMatchingBracket(jsonContent, arrayStart);
-        String librariesArray = jsonContent.substring(arrayStart, arrayEnd + 1);
+        LaunchPlan prepare(String version, String versionUrl) throws Exception {
+            return prepare(Map.of(version, versionUrl)).get(version);
+        }
         
-        List<String[]> toDownload = new ArrayList<>();
-        String osName = getOsName();
+        // Brings every version up to date in one install: libraries and native jars are planned
+        // once by path and asset objects once by hash, however many versions share them. A
+        // version whose saved plan is still current is neither parsed nor checked on disk.
+        Map<String, LaunchPlan> prepare(Map<String, String> versionUrls) throws Exception {
+            // A launcher installing one of these versions right now is waited for and its plan reused
+            List<InstallLock.Lease> leases = List.of();
+            try {
+                leases = InstallLock.VERSIONS.acquireAll(versionUrls.keySet());
+                if (leases.stream().anyMatch(InstallLock.Lease::waited)) {
+                    System.out.println("Waited for another launcher installing " + String.join(", ", versionUrls.keySet()));
+                }
+                Map<String, LaunchPlan> plans = resolve(versionUrls);
+                progress.phase(InstallProgress.Phase.READY, "");
+                return plans;
+            } catch (Exception e) {
+                progress.phase(InstallProgress.Phase.FAILED, String.valueOf(e.getMessage()));
+                throw e;
+            } finally {
+                for (int i = leases.size() - 1; i >= 0; i--) leases.get(i).close();
+            }
+        }
         
-        int pos = 0;
-        while ((pos = librariesArray.indexOf("{", pos)) != -1) {
-            int objEnd = findMatchingBrace(librariesArray, pos);
-            String libObj = librariesArray.substring(pos, objEnd + 1);
-            
-            if (!checkLibraryRules(libObj, osName)) {
-                pos = objEnd + 1;
-                continue;
+        private Map<String, LaunchPlan> resolve(Map<String, String> versionUrls) throws Exception {
+            for (String dir : new String[] {LAUNCHER_DIR, VERSIONS_DIR, LIBRARIES_DIR, ASSETS_DIR,
+                                            ASSETS_DIR + "/indexes", ASSETS_DIR + "/objects", NATIVES_DIR}) {
+                new File(dir).mkdirs();
             }
             
-            int downloadsPos = libObj.indexOf("\"downloads\"");
-            if (downloadsPos != -1) {
-                int artifactPos = libObj.indexOf("\"artifact\"", downloadsPos);
-                if (artifactPos != -1) {
-                    String path = extractJsonValue(libObj.substring(artifactPos), "path");
-                    String url = extractJsonValue(libObj.substring(artifactPos), "url");
-                    if (path != null && url != null) {
-                        toDownload.add(new String[]{path, url});
-                    }
-                }
+            Map<String, LaunchPlan> plans = new HashMap<>();
+            Map<String, VersionProfile> profiles = new LinkedHashMap<>();
+            Map<String, String> jsonSha1s = new HashMap<>();
+            for (Map.Entry<String, String> entry : versionUrls.entrySet()) {
+                String version = entry.getKey();
+                Path jsonPath = Paths.get(VERSIONS_DIR, version, version + ".json");
+                Files.createDirectories(jsonPath.getParent());
+                byte[] json = MetadataCache.fetchOrCached(entry.getValue(), jsonPath);
+                String jsonSha1 = LaunchPlan.sha1Hex(json);
                 
-                int classifiersPos = libObj.indexOf("\"classifiers\"", downloadsPos);
-                if (classifiersPos != -1) {
-                    String nativeKey = getNativeKey(libObj, osName);
-                    if (nativeKey != null) {
-                        int nativePos = libObj.indexOf("\"" + nativeKey + "\"", classifiersPos);
-                        if (nativePos != -1) {
-                            String path = extractJsonValue(libObj.substring(nativePos), "path");
-                            String url = extractJsonValue(libObj.substring(nativePos), "url");
-                            if (path != null && url != null) {
-                                toDownload.add(new String[]{path, url});
-                            }
-                        }
-                    }
+                // Same version JSON and the same installed files as last time: reuse the saved plan
+                LaunchPlan plan = fullVerify ? null : LaunchPlan.load(version);
+                if (plan != null && plan.isCurrent(jsonSha1)) {
+                    plans.put(version, plan);
+                } else {
+                    profiles.put(version, VersionProfile.parse(JsonReader.decode(json)));
+                    jsonSha1s.put(version, jsonSha1);
                 }
             }
             
-            pos = objEnd + 1;
+            if (!profiles.isEmpty()) {
+                install(profiles);
+                for (Map.Entry<String, VersionProfile> entry : profiles.entrySet()) {
+                    String version = entry.getKey();
+                    LaunchPlan plan = LaunchPlan.build(version, jsonSha1s.get(version), entry.getValue(),
+                                                       NATIVES_DIR + "/" + version);
+                    plan.save();
+                    plans.put(version, plan);
+                }
+            }
+            Map<String, LaunchPlan> ordered = new LinkedHashMap<>();
+            for (String version : versionUrls.keySet()) ordered.put(version, plans.get(version));
+            return ordered;
         }
         
-        int total = toDownload.size();
-        int current = 0;
-        
-        for (String[] item : toDownload) {
-            String path = item[0];
-            String url = item[1];
-            String fullPath = LIBRARIES_DIR + "/" + path;
+        private void install(Map<String, VersionProfile> profiles) throws Exception {
+            // The graph checks every file itself, so the preflight touches no files: the install
+            // index stands in for the disk, and assets count at their declared total size (a
+            // worst case, as reading the asset index here would only be repeated by the graph)
+            InstallEstimate estimate = estimateInstall(profiles.values(), false,
+                (kind, path, sha1, size) -> INSTALL_INDEX.contains(path, sha1, size));
+            checkFreeSpace(estimate.missingBytes());
+            long cap = Bandwidth.rate();
+            System.out.println("Install needs up to " + formatBytes(estimate.missingBytes()) + " ("
+                + estimate.missingFiles() + " files besides assets"
+                + (cap > 0 ? ", up to " + formatDuration(estimate.missingBytes() / cap)
+                    + " at the " + formatBytes(cap) + "/s cap" : "") + ")");
             
-            if (!new File(fullPath).exists()) {
-                try {
-                    new File(fullPath).getParentFile().mkdirs();
-                    downloadFile(url, fullPath);
-                } catch (Exception e) {
-                    System.err.println("Failed to download library: " + path);
-                }
+            Map<String, Artifact> libraries = new LinkedHashMap<>();
+            Map<String, Artifact> nativeJars = new LinkedHashMap<>();
+            Map<String, AssetIndexRef> indexes = new LinkedHashMap<>();
+            for (VersionProfile profile : profiles.values()) {
+                for (Artifact artifact : profile.classpathArtifacts()) libraries.putIfAbsent(artifact.path(), artifact);
+                for (Artifact artifact : profile.nativeArtifacts()) nativeJars.putIfAbsent(artifact.path(), artifact);
+                AssetIndexRef index = profile.assetIndex();
+                if (index != null) indexes.putIfAbsent(index.id(), index);
             }
             
-            current++;
-            int progress = 10 + (20 * current / Math.max(total, 1));
-            updateProgress(progress);
-            
-            final int c = current;
-            SwingUtilities.invokeLater(() -> {
-                progressLabel.setText("Downloading libraries... (" + c + "/" + total + ")");
-            });
+            // Everything else only depends on the parsed profiles, so run it as a graph: client
+            // jars, libraries and assets start together (assets stream from their indexes as they
+            // download), and each version's natives wait only for the native jars
+            progress.phase(InstallProgress.Phase.DOWNLOADING, "");
+            InstallGraph graph = new InstallGraph(INSTALL_EXECUTOR);
+            graph.add("libraries", () -> downloadLibraries(progress, List.copyOf(libraries.values()), "libraries"));
+            graph.add("native-jars", () -> downloadLibraries(progress, List.copyOf(nativeJars.values()), "natives"));
+            graph.add("assets", () -> downloadAllAssets(progress, List.copyOf(indexes.values())));
+            for (Map.Entry<String, VersionProfile> entry : profiles.entrySet()) {
+                String version = entry.getKey();
+                VersionProfile profile = entry.getValue();
+                Artifact client = profile.client();
+                String jarPath = VERSIONS_DIR + "/" + version + "/" + version + ".jar";
+                graph.add("client " + version, () -> {
+                    if (client != null && !isInstalled(jarPath, client.sha1(), client.size())) {
+                        progress.planned("client", client.size());
+                        downloadFile(client.url(), jarPath, client.sha1(), client.size());
+                        progress.downloaded(client.size());
+                    }
+                });
+                graph.add("natives " + version, () -> extractNatives(profile, NATIVES_DIR + "/" + version), "native-jars");
+            }
+            graph.await();
         }
-    }
-    
-    private boolean checkLibraryRules(String libObj, String osName) {
-        int rulesPos = libObj.indexOf("\"rules\"");
-        if (rulesPos == -1) return true;
         
-        boolean allowed = false;
-        int arrayStart = libObj.indexOf("[", rulesPos);
-        if (arrayStart == -1) return true;
-        int arrayEnd = findMatchingBracket(libObj, arrayStart);
-        String rulesArray = libObj.substring(arrayStart, arrayEnd + 1);
-        
-        int pos = 0;
-        while ((pos = rulesArray.indexOf("{", pos)) != -1) {
-            int objEnd = findMatchingBrace(rulesArray, pos);
-            String ruleObj = rulesArray.substring(pos, objEnd + 1);
+        // Starts the game from a prepared plan. Stable JVM options and the classpath come from
+        // the plan's @argfile; the game's output goes wherever the caller points it.
+        static Process launch(String version, String username, int ram, LaunchPlan plan,
+                              ProcessBuilder.Redirect output) throws IOException {
+            List<String> cmd = new ArrayList<>();
+            cmd.add(getJavaPath());
+            cmd.add("-Xmx" + ram + "G");
+            cmd.add("-Xms512M");
+            cmd.add("@" + LaunchPlan.argFile(version));
+            cmd.add(plan.mainClass());
+            cmd.addAll(plan.gameArgs());
             
-            String action = extractJsonValue(ruleObj, "action");
-            boolean isAllow = "allow".equals(action);
+            String uuid = generateOfflineUUID(username);
+            cmd.add("--username"); cmd.add(username);
+            cmd.add("--uuid"); cmd.add(uuid);
             
-            int osPos = ruleObj.indexOf("\"os\"");
-            if (osPos == -1) {
-                allowed = isAllow;
-            } else {
-                String ruleName = extractJsonValue(ruleObj.substring(osPos), "name");
-                if (ruleName != null && ruleName.equals(osName)) {
-                    allowed = isAllow;
-                }
-            }
+            System.out.println("═══════════════════════════════════════════════════════════════════════");
+            System.out.println("🚀 LAUNCHING MINECRAFT " + version);
+            System.out.println("═══════════════════════════════════════════════════════════════════════");
+            System.out.println("Main Class: " + plan.mainClass());
+            System.out.println("Username: " + username);
+            System.out.println("Memory: " + ram + "GB");
+            System.out.println("Libraries: " + plan.classpath().size());
+            System.out.println("Arg File: " + LaunchPlan.argFile(version));
+            System.out.println("═══════════════════════════════════════════════════════════════════════");
             
-            pos = objEnd + 1;
+            ProcessBuilder pb = new ProcessBuilder(cmd);
+            pb.directory(new File(LAUNCHER_DIR));
+            pb.redirectInput(ProcessBuilder.Redirect.INHERIT);
+            pb.redirectOutput(output);
+            pb.redirectError(output);
+            return pb.start();
         }
-        
-        return allowed;
     }
     
-    private String getNativeKey(String libObj, String osName) {
-        int nativesPos = libObj.indexOf("\"natives\"");
-        if (nativesPos == -1) return "natives-" + osName;
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // INSTALL PROGRESS - lock-free counters bumped by the workers, sampled by the views
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // Download threads only add to atomics; nothing is posted per file. The window reads a
+    // snapshot on a Swing timer and --install on a scheduled thread, each at its own rate, so
+    // thousands of small assets cost the view nothing. Phase changes are rare and are pushed.
+    static final class InstallProgress {
+        enum Phase { METADATA, DOWNLOADING, READY, FAILED }
+        
+        interface Listener {
+            void phaseChanged(Phase phase, String detail);
+        }
+        
+        // Files and bytes are those found missing so far; eta is in seconds, or -1 while some
+        // stage (an asset index being read, say) may still find more to download
+        record Snapshot(Phase phase, String detail, String kind, int percent, int filesDone, int filesTotal,
+                        int failed, long bytesDone, long bytesTotal, double rate, long eta) {}
+        
+        private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+        private volatile Phase phase = Phase.METADATA;
+        private volatile String detail = "";
+        private volatile String kind = "";
+        private volatile long started = System.nanoTime();
+        private final AtomicInteger filesDone = new AtomicInteger();
+        private final AtomicInteger filesTotal = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicLong bytesDone = new AtomicLong();
+        private final AtomicLong bytesTotal = new AtomicLong();
+        private final AtomicInteger planning = new AtomicInteger();
+        // Stages report concurrently, so the percentage only ever moves forward
+        private final AtomicInteger percent = new AtomicInteger();
+        
+        void addListener(Listener listener) {
+            listeners.add(listener);
+        }
+        
+        void phase(Phase next, String why) {
+            detail = why;
+            if (next == Phase.DOWNLOADING) started = System.nanoTime();
+            phase = next;
+            for (Listener listener : listeners) listener.phaseChanged(next, why);
+        }
+        
+        // A stage that decides what is missing as it goes keeps the totals open until it closes
+        void openPlan() {
+            planning.incrementAndGet();
+        }
+        
+        void closePlan() {
+            planning.decrementAndGet();
+        }
+        
+        void planned(String what, long size) {
+            kind = what;
+            filesTotal.incrementAndGet();
+            bytesTotal.addAndGet(Math.max(size, 0));
+        }
+        
+        void downloaded(long size) {
+            bytesDone.addAndGet(Math.max(size, 0));
+            filesDone.incrementAndGet();
+        }
         
-        int braceStart = libObj.indexOf("{", nativesPos);
-        if (braceStart == -1) return "natives-" + osName;
-        int braceEnd = findMatchingBrace(libObj, braceStart);
-        String nativesObj = libObj.substring(braceStart, braceEnd + 1);
+        void failed(int count) {
+            failed.addAndGet(count);
+        }
         
-        String key = extractJsonValue(nativesObj, osName);
-        if (key != null) {
-            key = key.replace("${arch}", System.getProperty("os.arch").contains("64") ? "64" : "32");
-            return key;
+        Snapshot snapshot() {
+            Phase now = phase;
+            long done = bytesDone.get();
+            long total = Math.max(bytesTotal.get(), done);
+            boolean complete = planning.get() == 0;
+            int value = switch (now) {
+                case METADATA -> 0;
+                case READY -> 100;
+                case FAILED -> percent.get();
+                case DOWNLOADING -> (int) (5 + (complete ? 95 : 90) * done / Math.max(total, 1));
+            };
+            // A cap that just came into force (or a burst at the start) isn't in the average yet
+            double rate = now == Phase.DOWNLOADING
+                ? Bandwidth.effectiveRate(done / Math.max((System.nanoTime() - started) / 1e9, 0.001)) : 0;
+            long eta = complete && rate > 0 ? (long) ((total - done) / rate) : -1;
+            return new Snapshot(now, detail, kind, percent.accumulateAndGet(value, Math::max), filesDone.get(),
+                                filesTotal.get(), failed.get(), done, total, rate, eta);
+        }
+    }
+    
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // LIBRARY DOWNLOAD
+    // ═══════════════════════════════════════════════════════════════════════════════
+    private static void downloadLibraries(InstallProgress progress, List<Artifact> toDownload, String kind)
+            throws Exception {
+        List<String> failures;
+        progress.openPlan();
+        try {
+            failures = downloadConcurrently(toDownload, Artifact::path, item -> {
+                String fullPath = LIBRARIES_DIR + "/" + item.path();
+                if (isInstalled(fullPath, item.sha1(), item.size())) return 0;
+                progress.planned(kind, item.size());
+                long bytes = downloadFile(item.url(), fullPath, item.sha1(), item.size());
+                progress.downloaded(item.size());
+                return bytes;
+            });
+        } finally {
+            progress.closePlan();
         }
         
-        return "natives-" + osName;
+        if (!failures.isEmpty()) {
+            progress.failed(failures.size());
+            throw failureReport(kind, toDownload.size(), failures);
+        }
+    }
+    
+    // Writes every failure to logs/<kind>-failures.txt and returns an exception summarising them
+    static IOException failureReport(String kind, int total, List<String> failures) {
+        Path report = Paths.get(LAUNCHER_DIR, "logs", kind + "-failures.txt");
+        String where;
+        try {
+            Files.createDirectories(report.getParent());
+            Files.write(report, failures);
+            where = " (full list in " + report + ")";
+        } catch (IOException e) {
+            where = "";
+        }
+        List<String> shown = failures.subList(0, Math.min(10, failures.size()));
+        return new IOException("Failed to download " + failures.size() + " of " + total + " " + kind + where + ":\n"
+            + String.join("\n", shown) + (failures.size() > shown.size() ? "\n..." : ""));
     }
     
-    private void extractNatives(String jsonContent, String nativesDir) throws Exception {
-        int libStart = jsonContent.indexOf("\"libraries\"");
-        if (libStart == -1) return;
+    // Native jars are unpacked once per jar SHA-1 into NATIVES_DIR/cache/<sha1>, and the
+    // per-version directory is filled with hard links into that cache. The marker lists the jar
+    // hashes it was built from, so an unchanged version skips the step without touching a jar.
+    private static void extractNatives(VersionProfile profile, String nativesDir) throws IOException {
+        List<String> jars = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        for (Artifact natives : profile.nativeArtifacts()) {
+            String jarPath = LIBRARIES_DIR + "/" + natives.path();
+            if (!checkedInstalled(jarPath, natives.sha1(), natives.size())) {
+                throw new IOException("Native library is missing: " + natives.path());
+            }
+            jars.add(jarPath);
+            keys.add(natives.sha1() != null ? natives.sha1().toLowerCase() : sha1Of(Paths.get(jarPath)));
+        }
         
-        int arrayStart = jsonContent.indexOf("[", libStart);
-        if (arrayStart == -1) return;
-        int arrayEnd = findMatchingBracket(jsonContent, arrayStart);
-        String librariesArray = jsonContent.substring(arrayStart, arrayEnd + 1);
+        Path versionDir = Paths.get(nativesDir);
+        Path marker = versionDir.resolve(NATIVES_MARKER);
+        String manifest = String.join("\n", keys);
+        if (Files.isRegularFile(marker) && manifest.equals(Files.readString(marker))) return;
         
-        String osName = getOsName();
+        List<CompletableFuture<Path>> extractions = new ArrayList<>();
+        for (int i = 0; i < jars.size(); i++) {
+            String jarPath = jars.get(i);
+            String key = keys.get(i);
+            extractions.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return cacheNatives(jarPath, key);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, INSTALL_EXECUTOR));
+        }
         
-        int pos = 0;
-        while ((pos = librariesArray.indexOf("{", pos)) != -1) {
-            int objEnd = findMatchingBrace(librariesArray, pos);
-            String libObj = librariesArray.substring(pos, objEnd + 1);
-            
-            if (!checkLibraryRules(libObj, osName)) {
-                pos = objEnd + 1;
-                continue;
+        // Later jars win on name clashes, as they did when everything was extracted in place
+        Map<String, Path> files = new LinkedHashMap<>();
+        List<String> failures = new ArrayList<>();
+        for (int i = 0; i < jars.size(); i++) {
+            try {
+                try (DirectoryStream<Path> dir = Files.newDirectoryStream(extractions.get(i).join())) {
+                    for (Path file : dir) files.put(file.getFileName().toString(), file);
+                }
+            } catch (CompletionException | IOException e) {
+                Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                if (cause instanceof UncheckedIOException) cause = cause.getCause();
+                failures.add(jars.get(i) + ": " + cause.getMessage());
             }
-            
-            int classifiersPos = libObj.indexOf("\"classifiers\"");
-            if (classifiersPos != -1) {
-                String nativeKey = getNativeKey(libObj, osName);
-                int nativePos = libObj.indexOf("\"" + nativeKey + "\"", classifiersPos);
-                if (nativePos != -1) {
-                    String path = extractJsonValue(libObj.substring(nativePos), "path");
-                    if (path != null) {
-                        String jarPath = LIBRARIES_DIR + "/" + path;
-                        if (new File(jarPath).exists()) {
-                            extractJar(jarPath, nativesDir);
-                        }
-                    }
+        }
+        if (!failures.isEmpty()) {
+            throw new IOException("Failed to extract " + failures.size() + " of " + jars.size() + " native jars:\n"
+                + String.join("\n", failures));
+        }
+        
+        Files.createDirectories(versionDir);
+        Files.deleteIfExists(marker);
+        try (DirectoryStream<Path> dir = Files.newDirectoryStream(versionDir)) {
+            for (Path stale : dir) {
+                if (Files.isRegularFile(stale) && !files.containsKey(stale.getFileName().toString())) {
+                    Files.delete(stale);
                 }
             }
-            
-            pos = objEnd + 1;
         }
+        for (Map.Entry<String, Path> e : files.entrySet()) {
+            Path target = versionDir.resolve(e.getKey());
+            Files.deleteIfExists(target);
+            try {
+                Files.createLink(target, e.getValue());
+            } catch (IOException | UnsupportedOperationException linkFailed) {
+                // No hard links here (FAT, some network shares): fall back to a plain copy
+                Files.copy(e.getValue(), target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.writeString(marker, manifest);
     }
     
-    private void extractJar(String jarPath, String destDir) {
-        try (ZipInputStream zis = new ZipInputStream(new FileInputStream(jarPath))) {
-            ZipEntry entry;
-            while ((entry = zis.getNextEntry()) != null) {
-                String name = entry.getName();
-                
-                if (name.startsWith("META-INF/") || entry.isDirectory()) {
-                    continue;
-                }
-                
-                if (name.endsWith(".dll") || name.endsWith(".so") || name.endsWith(".dylib") || name.endsWith(".jnilib")) {
-                    File outFile = new File(destDir, new File(name).getName());
-                    
-                    try (FileOutputStream fos = new FileOutputStream(outFile)) {
-                        byte[] buffer = new byte[8192];
-                        int len;
-                        while ((len = zis.read(buffer)) > 0) {
-                            fos.write(buffer, 0, len);
-                        }
+    // Reads only the native entries through the zip's central directory. The cache entry is
+    // built in a temp dir and renamed into place, so it either exists complete or not at all.
+    private static Path cacheNatives(String jarPath, String sha1) throws IOException {
+        Path cacheRoot = Paths.get(NATIVES_DIR, "cache");
+        Path target = cacheRoot.resolve(sha1);
+        if (Files.isDirectory(target)) return target;
+        
+        Files.createDirectories(cacheRoot);
+        Path tmp = Files.createTempDirectory(cacheRoot, sha1 + ".");
+        try {
+            try (ZipFile zip = new ZipFile(jarPath)) {
+                Enumeration<? extends ZipEntry> entries = zip.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    String name = entry.getName();
+                    if (entry.isDirectory() || name.startsWith("META-INF/") || !isNativeLibrary(name)) continue;
+                    try (InputStream in = zip.getInputStream(entry)) {
+                        Files.copy(in, tmp.resolve(new File(name).getName()), StandardCopyOption.REPLACE_EXISTING);
                     }
                 }
             }
-        } catch (Exception e) {
-            System.err.println("Failed to extract natives from: " + jarPath);
+            try {
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                // Another launch finished the same jar first; theirs is just as good
+                if (!Files.isDirectory(target)) throw e;
+            }
+        } finally {
+            if (Files.isDirectory(tmp)) {
+                try (DirectoryStream<Path> dir = Files.newDirectoryStream(tmp)) {
+                    for (Path file : dir) Files.delete(file);
+                }
+                Files.delete(tmp);
+            }
+        }
+        return target;
+    }
+    
+    private static boolean isNativeLibrary(String name) {
+        return name.endsWith(".dll") || name.endsWith(".so") || name.endsWith(".dylib") || name.endsWith(".jnilib");
+    }
+    
+    interface DownloadTask<T> {
+        // Returns the number of bytes fetched, or 0 when the item was already present
+        long download(T item) throws Exception;
+    }
+    
+    interface ItemSource<T> {
+        // Blocks until the next item is available; null once there are no more
+        T next() throws InterruptedException;
+    }
+    
+    private static <T> List<String> downloadConcurrently(List<T> items, Function<T, String> describe,
+                                                         DownloadTask<T> task) throws InterruptedException {
+        Iterator<T> it = items.iterator();
+        return downloadConcurrently(() -> it.hasNext() ? it.next() : null, describe, task);
+    }
+    
+    // Runs one task per item on DOWNLOAD_EXECUTOR, never more than DOWNLOAD_LIMITER allows at
+    // once, and waits for all of them. Items are taken from the source as slots free up, so a
+    // slow producer is never outrun. Returns a "name: reason" line per failed item.
+    private static <T> List<String> downloadConcurrently(ItemSource<T> items, Function<T, String> describe,
+                                                         DownloadTask<T> task) throws InterruptedException {
+        List<String> failures = Collections.synchronizedList(new ArrayList<>());
+        Phaser remaining = new Phaser(1);
+        
+        for (T item; (item = items.next()) != null; ) {
+            T current = item;
+            DOWNLOAD_LIMITER.acquire();
+            remaining.register();
+            DOWNLOAD_EXECUTOR.execute(() -> {
+                long bytes = 0;
+                boolean congested = false;
+                try {
+                    bytes = task.download(current);
+                } catch (Exception e) {
+                    congested = AdaptiveLimiter.isCongestion(e);
+                    failures.add(describe.apply(current) + ": " + e.getMessage());
+                } finally {
+                    DOWNLOAD_LIMITER.release(bytes, congested);
+                    remaining.arriveAndDeregister();
+                }
+            });
+        }
+        remaining.awaitAdvanceInterruptibly(remaining.arrive());
+        return failures;
+    }
+    
+    private static ExecutorService newDownloadExecutor() {
+        try {
+            // Virtual threads on Java 21+, looked up reflectively so the launcher still runs on 17
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "ctlauncher-download");
+                t.setDaemon(true);
+                return t;
+            });
         }
     }
     
     // ═══════════════════════════════════════════════════════════════════════════════
     // ASSET DOWNLOAD - FULL with MULTITHREADING
     // ═══════════════════════════════════════════════════════════════════════════════
-    private void downloadAllAssets(String jsonContent) throws Exception {
-        String assetIndexId = extractNestedJsonValue(jsonContent, "assetIndex", "id");
-        String assetIndexUrl = extractNestedJsonValue(jsonContent, "assetIndex", "url");
+    record AssetObject(String hash, long size) {
+        // Marks the end of a pipeline queue
+        static final AssetObject END = new AssetObject("", -1);
         
-        if (assetIndexId == null || assetIndexUrl == null) {
-            System.out.println("No asset index found");
-            return;
+        String path() {
+            return ASSETS_DIR + "/objects/" + hash.substring(0, 2) + "/" + hash;
+        }
+    }
+    
+    // A set of SHA-1s packed back to back in the order added, found through an open-addressed
+    // table of indices into them. Hex is parsed straight into place, so adding allocates nothing
+    // but the occasional doubling.
+    static final class PackedHashes {
+        private byte[] hashes = new byte[20 * 1024];
+        private int[] table = new int[2048]; // index + 1, 0 when free
+        private int count;
+        
+        // False if the hash was already in the set
+        boolean add(String hex) {
+            if (hashes.length < (count + 1) * 20) hashes = Arrays.copyOf(hashes, hashes.length * 2);
+            int at = count * 20;
+            for (int i = 0; i < 20; i++) {
+                hashes[at + i] = (byte) HexFormat.fromHexDigits(hex, i * 2, i * 2 + 2);
+            }
+            int mask = table.length - 1;
+            int slot = slot(at) & mask;
+            for (; table[slot] != 0; slot = (slot + 1) & mask) {
+                int other = (table[slot] - 1) * 20;
+                if (Arrays.equals(hashes, other, other + 20, hashes, at, at + 20)) return false;
+            }
+            table[slot] = ++count;
+            if (count * 2 > table.length) grow();
+            return true;
         }
         
-        // Download asset index
-        String indexPath = ASSETS_DIR + "/indexes/" + assetIndexId + ".json";
-        if (!new File(indexPath).exists()) {
-            downloadFile(assetIndexUrl, indexPath);
+        int count() {
+            return count;
         }
         
-        String indexContent = new String(Files.readAllBytes(Paths.get(indexPath)));
+        ByteBuffer packed() {
+            return ByteBuffer.wrap(hashes, 0, count * 20).slice();
+        }
         
-        // Parse all asset hashes
-        List<String> assetHashes = new ArrayList<>();
+        private void grow() {
+            table = new int[table.length * 2];
+            int mask = table.length - 1;
+            for (int i = 0; i < count; i++) {
+                int slot = slot(i * 20) & mask;
+                while (table[slot] != 0) slot = (slot + 1) & mask;
+                table[slot] = i + 1;
+            }
+        }
         
-        int objectsPos = indexContent.indexOf("\"objects\"");
-        if (objectsPos == -1) return;
+        // SHA-1 output is uniform, so its first four bytes do as a hash code
+        private int slot(int at) {
+            return (hashes[at] & 0xFF) << 24 | (hashes[at + 1] & 0xFF) << 16
+                 | (hashes[at + 2] & 0xFF) << 8 | (hashes[at + 3] & 0xFF);
+        }
+    }
+    
+    // An asset index decoded to 20-byte hashes packed back to back plus an int per size. Each
+    // distinct object appears once even when the index lists it under several names. It is
+    // saved as indexes/<id>.bin next to the JSON and memory-mapped when reused; versions
+    // sharing an index within one run share the same instance.
+    static final class AssetIndex {
+        private static final int MAGIC = 0x43544149; // "CTAI"
+        private static final int VERSION = 1;
+        private static final int HEADER = 12 + 20;
+        private static final Map<String, AssetIndex> LOADED = new ConcurrentHashMap<>();
+        
+        interface Sink {
+            void accept(AssetObject asset) throws InterruptedException;
+        }
         
-        int braceStart = indexContent.indexOf("{", objectsPos);
-        if (braceStart == -1) return;
-        int braceEnd = findMatchingBrace(indexContent, braceStart);
-        String objectsSection = indexContent.substring(braceStart, braceEnd + 1);
+        private final ByteBuffer hashes;
+        private final IntBuffer sizes;
         
-        int pos = 0;
-        while ((pos = objectsSection.indexOf("\"hash\"", pos)) != -1) {
-            int colonPos = objectsSection.indexOf(":", pos);
-            int quoteStart = objectsSection.indexOf("\"", colonPos);
-            int quoteEnd = objectsSection.indexOf("\"", quoteStart + 1);
-            
-            if (quoteEnd > quoteStart) {
-                String hash = objectsSection.substring(quoteStart + 1, quoteEnd);
-                if (hash.length() >= 2) {
-                    assetHashes.add(hash);
-                }
-            }
-            pos = quoteEnd + 1;
+        private AssetIndex(ByteBuffer hashes, IntBuffer sizes) {
+            this.hashes = hashes;
+            this.sizes = sizes;
         }
         
-        // Filter to missing assets only
-        List<String> missingAssets = new ArrayList<>();
-        for (String hash : assetHashes) {
-            String prefix = hash.substring(0, 2);
-            String assetPath = ASSETS_DIR + "/objects/" + prefix + "/" + hash;
-            if (!new File(assetPath).exists()) {
-                missingAssets.add(hash);
-            }
+        int count() {
+            return sizes.limit();
         }
         
-        if (missingAssets.isEmpty()) {
-            SwingUtilities.invokeLater(() -> progressLabel.setText("All assets already downloaded!"));
-            return;
+        String hash(int i) {
+            byte[] hash = new byte[20];
+            hashes.get(i * 20, hash);
+            return HexFormat.of().formatHex(hash);
         }
         
-        totalFiles.set(missingAssets.size());
-        downloadedFiles.set(0);
-        failedFiles.set(0);
-        
-        System.out.println("Downloading " + missingAssets.size() + " assets using " + DOWNLOAD_THREADS + " threads...");
+        long size(int i) {
+            return sizes.get(i);
+        }
         
-        // Parallel download
-        ExecutorService executor = Executors.newFixedThreadPool(DOWNLOAD_THREADS);
-        List<Future<?>> futures = new ArrayList<>();
+        AssetObject object(int i) {
+            return new AssetObject(hash(i), size(i));
+        }
         
-        for (String hash : missingAssets) {
-            futures.add(executor.submit(() -> {
+        static AssetIndex load(AssetIndexRef ref, Path json) throws IOException {
+            String key = ref.id() + "/" + ref.sha1();
+            AssetIndex index = LOADED.get(key);
+            if (index != null) return index;
+            
+            Path sidecar = json.resolveSibling(ref.id() + ".bin");
+            index = ref.sha1() != null ? map(sidecar, ref.sha1()) : null;
+            if (index == null) {
                 try {
-                    String prefix = hash.substring(0, 2);
-                    String assetPath = ASSETS_DIR + "/objects/" + prefix + "/" + hash;
-                    String assetUrl = RESOURCES_URL + prefix + "/" + hash;
-                    
-                    new File(assetPath).getParentFile().mkdirs();
-                    downloadFile(assetUrl, assetPath);
-                    
-                    int done = downloadedFiles.incrementAndGet();
-                    int total = totalFiles.get();
-                    
-                    if (done % 50 == 0 || done == total) {
-                        int progress = 35 + (65 * done / total);
-                        SwingUtilities.invokeLater(() -> {
-                            progressBar.setValue(progress);
-                            progressLabel.setText("Downloading assets... (" + done + "/" + total + ")");
-                            statusLabel.setText("Assets: " + done + "/" + total);
-                        });
-                    }
-                } catch (Exception e) {
-                    failedFiles.incrementAndGet();
+                    index = parse(JsonReader.of(json), asset -> {});
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e); // the no-op sink never blocks
                 }
-            }));
+                index.remember(ref, sidecar);
+            }
+            LOADED.put(key, index);
+            return index;
         }
         
-        // Wait for completion
-        for (Future<?> future : futures) {
-            try {
-                future.get();
-            } catch (Exception e) {}
+        // Parses the index as it downloads and hands each object to sink the moment it is
+        // decoded. The bytes are written to <id>.json.part and hashed on the way through, and the
+        // file is only moved into place (and its sidecar written) once size and SHA-1 match.
+        static AssetIndex download(AssetIndexRef ref, Path json, Sink sink) throws Exception {
+            // A retry reads the index from the start again. Objects come out in the order the
+            // index lists them, so the first `handed` of them went over already and are skipped.
+            int[] handed = new int[1];
+            return RetryPolicy.run(ref.url(), url -> {
+                int[] read = new int[1];
+                return downloadOnce(url, ref, json, asset -> {
+                    if (read[0]++ < handed[0]) return;
+                    handed[0]++;
+                    sink.accept(asset);
+                });
+            });
         }
         
-        executor.shutdown();
-        executor.awaitTermination(60, TimeUnit.MINUTES);
+        private static AssetIndex downloadOnce(String url, AssetIndexRef ref, Path json, Sink sink) throws Exception {
+            Path part = scratchFile(json, ".part");
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            long[] total = new long[1];
+            AssetIndex index;
+            
+            long started = System.nanoTime();
+            HttpResponse<InputStream> response = Http.get(url, 0, ref.sha1(), ref.size());
+            try (InputStream body = response.body();
+                 OutputStream out = Channels.newOutputStream(openForWrite(part, StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))) {
+                InputStream tee = new FilterInputStream(body) {
+                    @Override
+                    public int read() throws IOException {
+                        byte[] one = new byte[1];
+                        return read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+                    }
+                    
+                    @Override
+                    public int read(byte[] b, int off, int len) throws IOException {
+                        int n = super.read(b, off, len);
+                        if (n > 0) {
+                            out.write(b, off, n);
+                            digest.update(b, off, n);
+                            total[0] += n;
+                        }
+                        return n;
+                    }
+                };
+                index = parse(JsonReader.of(tee), sink);
+                tee.transferTo(OutputStream.nullOutputStream()); // the rest still counts toward the hash
+            }
+            
+            String actual = HexFormat.of().formatHex(digest.digest());
+            if ((ref.size() >= 0 && total[0] != ref.size()) || (ref.sha1() != null && !actual.equalsIgnoreCase(ref.sha1()))) {
+                Files.deleteIfExists(part);
+                throw new IOException("Asset index " + ref.id() + " failed verification (" + total[0] + " bytes, SHA-1 " + actual + ")");
+            }
+            Mirrors.record(url, total[0], System.nanoTime() - started);
+            moveIntoPlace(part, json, ref.sha1(), total[0]);
+            index.remember(ref, json.resolveSibling(ref.id() + ".bin"));
+            LOADED.put(ref.id() + "/" + ref.sha1(), index);
+            return index;
+        }
         
-        int failed = failedFiles.get();
-        if (failed > 0) {
-            System.out.println("Warning: " + failed + " assets failed to download");
+        private void remember(AssetIndexRef ref, Path sidecar) {
+            if (ref.sha1() == null) return;
+            try {
+                save(sidecar, ref.sha1());
+            } catch (IOException e) {
+                System.err.println("Could not cache asset index " + ref.id() + ": " + e.getMessage());
+            }
         }
         
-        SwingUtilities.invokeLater(() -> {
-            progressLabel.setText("Assets complete: " + downloadedFiles.get() + "/" + totalFiles.get());
-        });
+        // Object names are skipped without allocating; only hash and size are kept. Each distinct
+        // object goes to sink as soon as its entry closes.
+        static AssetIndex parse(JsonReader reader, Sink sink) throws IOException, InterruptedException {
+            PackedHashes hashes = new PackedHashes();
+            int[] sizes = new int[1024];
+            
+            reader.beginObject();
+            if (reader.findName("objects")) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    reader.skipName();
+                    reader.beginObject();
+                    String hash = null;
+                    long size = -1;
+                    while (reader.hasNext()) {
+                        String name = reader.nextName();
+                        if (name.equals("hash")) hash = reader.nextString();
+                        else if (name.equals("size")) size = reader.nextLong();
+                        else reader.skipValue();
+                    }
+                    reader.endObject();
+                    if (hash == null || hash.length() != 40 || size > Integer.MAX_VALUE) {
+                        throw new IOException("Bad asset index entry: " + hash);
+                    }
+                    if (hashes.add(hash)) {
+                        int i = hashes.count() - 1;
+                        if (i == sizes.length) sizes = Arrays.copyOf(sizes, i * 2);
+                        sizes[i] = (int) size;
+                        sink.accept(new AssetObject(hash, size));
+                    }
+                }
+            }
+            return new AssetIndex(hashes.packed(), IntBuffer.wrap(sizes, 0, hashes.count()).slice());
+        }
+        
+        private static AssetIndex map(Path file, String sha1) throws IOException {
+            if (!Files.isRegularFile(file)) return null;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                byte[] source = new byte[20];
+                if (buf.remaining() < HEADER || buf.getInt() != MAGIC || buf.getInt() != VERSION) return null;
+                int count = buf.getInt();
+                buf.get(source);
+                if (count < 0 || buf.capacity() != HEADER + 24L * count
+                        || !Arrays.equals(source, HexFormat.of().parseHex(sha1))) {
+                    return null; // stale or foreign sidecar, rebuilt from the JSON
+                }
+                ByteBuffer hashes = buf.slice(HEADER, count * 20);
+                IntBuffer sizes = buf.slice(HEADER + count * 20, count * 4).asIntBuffer();
+                return new AssetIndex(hashes, sizes);
+            }
+        }
+        
+        private void save(Path file, String sha1) throws IOException {
+            int count = count();
+            ByteBuffer buf = ByteBuffer.allocate(HEADER + 24 * count);
+            buf.putInt(MAGIC).putInt(VERSION).putInt(count).put(HexFormat.of().parseHex(sha1));
+            buf.put(hashes.duplicate().clear());
+            buf.asIntBuffer().put(sizes.duplicate().clear());
+            
+            Path tmp = scratchFile(file, ".tmp");
+            Files.write(tmp, buf.array());
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+    
+    // Installs the objects of several indexes as one stream; an object listed by more than one
+    // index (most are, between versions) is checked and fetched only once
+    private static void downloadAllAssets(InstallProgress progress, List<AssetIndexRef> assetIndexes)
+            throws Exception {
+        if (assetIndexes.isEmpty()) {
+            System.out.println("No asset index found");
+            return;
+        }
+        
+        // All 256 object prefix directories up front, so no single download needs a mkdir
+        for (int i = 0; i < 256; i++) {
+            new File(ASSETS_DIR + "/objects/" + HexFormat.of().toHexDigits((byte) i)).mkdirs();
+        }
+        
+        AtomicInteger totalFiles = new AtomicInteger();
+        
+        // Three stages joined by bounded queues: the index is decoded (while it downloads, when it
+        // isn't cached yet), each object is checked against what is installed, and the missing
+        // ones are scheduled by size and fetched. The first download starts with the first
+        // decoded entry, and a full queue holds the stage before it back.
+        BlockingQueue<AssetObject> decoded = new ArrayBlockingQueue<>(ASSET_QUEUE);
+        AssetScheduler missing = new AssetScheduler(ASSET_QUEUE);
+        // A stage that gives up cancels the one feeding it, which would otherwise block on a full
+        // queue for good: the verifier through this flag, the downloads through missing.cancel()
+        AtomicBoolean verifierGone = new AtomicBoolean();
+        AssetIndex.Sink toVerifier = asset -> {
+            if (verifierGone.get()) throw new CancellationException("Asset check stopped");
+            decoded.put(asset);
+        };
+        // Totals keep growing until the whole index has been read
+        progress.openPlan();
+        
+        CompletableFuture<Void> decoder = CompletableFuture.runAsync(() -> {
+            try {
+                for (AssetIndexRef assetIndex : assetIndexes) {
+                    Path indexPath = Paths.get(ASSETS_DIR, "indexes", assetIndex.id() + ".json");
+                    if (isInstalled(indexPath.toString(), assetIndex.sha1(), assetIndex.size())) {
+                        // Everything is known up front here, so hand over the large objects first,
+                        // biggest first, before the small ones can fill the pipeline
+                        AssetIndex index = AssetIndex.load(assetIndex, indexPath);
+                        List<Integer> large = new ArrayList<>();
+                        for (int i = 0; i < index.count(); i++) {
+                            if (index.size(i) >= LARGE_ASSET) large.add(i);
+                        }
+                        large.sort(Comparator.comparingLong((Integer i) -> index.size(i)).reversed());
+                        for (int i : large) toVerifier.accept(index.object(i));
+                        for (int i = 0; i < index.count(); i++) {
+                            if (index.size(i) < LARGE_ASSET) toVerifier.accept(index.object(i));
+                        }
+                    } else {
+                        AssetIndex.download(assetIndex, indexPath, toVerifier);
+                    }
+                }
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            } finally {
+                putLast(decoded, AssetObject.END);
+            }
+        }, INSTALL_EXECUTOR);
+        
+        CompletableFuture<Void> verifier = CompletableFuture.runAsync(() -> {
+            boolean finished = false;
+            try {
+                PackedHashes seen = new PackedHashes();
+                for (AssetObject asset; (asset = decoded.take()) != AssetObject.END; ) {
+                    if (!seen.add(asset.hash())) continue;
+                    boolean installed;
+                    try {
+                        installed = isInstalled(asset.path(), asset.hash(), asset.size());
+                    } catch (IOException e) {
+                        installed = false;
+                    }
+                    if (!installed) {
+                        totalFiles.incrementAndGet();
+                        progress.planned("assets", asset.size());
+                        missing.put(asset);
+                    }
+                }
+                finished = true;
+            } catch (InterruptedException e) {
+                throw new CompletionException(e);
+            } finally {
+                if (!finished) {
+                    // Emptied after the flag is up, so the decoder's next hand-over fails instead of blocking
+                    verifierGone.set(true);
+                    decoded.clear();
+                }
+                progress.closePlan();
+                missing.close();
+            }
+        }, INSTALL_EXECUTOR);
+        
+        System.out.println("Streaming assets of index "
+            + String.join(", ", assetIndexes.stream().map(AssetIndexRef::id).toList())
+            + " (concurrency limit " + DOWNLOAD_LIMITER.getLimit() + ")...");
+        
+        List<String> failures = null;
+        try {
+            failures = downloadConcurrently(missing, AssetObject::hash, asset -> {
+                String hash = asset.hash();
+                String assetUrl = RESOURCES_URL + hash.substring(0, 2) + "/" + hash;
+                
+                long bytes = asset.size() >= 0 && asset.size() < LARGE_ASSET
+                    ? downloadHedged(assetUrl, asset.path(), hash, asset.size())
+                    : downloadFile(assetUrl, asset.path(), hash, asset.size());
+                progress.downloaded(asset.size());
+                return bytes;
+            });
+        } finally {
+            if (failures == null) missing.cancel();
+        }
+        try {
+            // The verifier first: when it failed, the decoder only reports being cancelled
+            verifier.join();
+            decoder.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Exception) throw (Exception) e.getCause();
+            throw e;
+        }
+        
+        if (totalFiles.get() == 0) return;
+        
+        if (HEDGES.get() > 0) {
+            System.out.println("Hedged " + HEDGES.get() + " slow asset requests");
+        }
+        if (InstallLock.FILES.contended() > 0) {
+            System.out.println("Waited on another launcher for " + InstallLock.FILES.contended() + " files; "
+                + InstallLock.FILES.reused.sum() + " waits ended with the file already in place");
+        }
+        Mirrors.printStats();
+        // Launching with missing sounds and textures is worse than not launching
+        if (!failures.isEmpty()) {
+            progress.failed(failures.size());
+            throw failureReport("assets", totalFiles.get(), failures);
+        }
+    }
+    
+    // Hands out missing assets so the big ones (music, long sounds) start early instead of
+    // straggling at the end, alternating with small ones to keep the other connections busy.
+    // Small objects are bounded like any pipeline queue; large ones are few and always accepted.
+    static final class AssetScheduler implements ItemSource<AssetObject> {
+        private final PriorityQueue<AssetObject> large =
+            new PriorityQueue<>(Comparator.comparingLong(AssetObject::size).reversed());
+        private final ArrayDeque<AssetObject> small = new ArrayDeque<>();
+        private final int capacity;
+        private boolean largeTurn = true;
+        private boolean closed;
+        private boolean cancelled;
+        
+        AssetScheduler(int capacity) {
+            this.capacity = capacity;
+        }
+        
+        synchronized void put(AssetObject asset) throws InterruptedException {
+            boolean isLarge = asset.size() >= LARGE_ASSET;
+            while (!isLarge && small.size() >= capacity && !cancelled) wait();
+            if (cancelled) throw new CancellationException("Asset downloads stopped");
+            if (isLarge) large.add(asset);
+            else small.add(asset);
+            notifyAll();
+        }
+        
+        synchronized void close() {
+            closed = true;
+            notifyAll();
+        }
+        
+        // The downloads have stopped: drops what is queued and fails any further put
+        synchronized void cancel() {
+            cancelled = true;
+            closed = true;
+            large.clear();
+            small.clear();
+            notifyAll();
+        }
+        
+        @Override
+        public synchronized AssetObject next() throws InterruptedException {
+            while (large.isEmpty() && small.isEmpty()) {
+                if (closed) return null;
+                wait();
+            }
+            boolean takeLarge = !large.isEmpty() && (largeTurn || small.isEmpty());
+            largeTurn = !takeLarge;
+            AssetObject next = takeLarge ? large.poll() : small.poll();
+            notifyAll();
+            return next;
+        }
     }
     
-    private String getOsName() {
+    // Queues a pipeline's end marker even if interrupted, so the next stage always finishes
+    private static <T> void putLast(BlockingQueue<T> queue, T end) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(end);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+    
+    static String getOsName() {
         String os = System.getProperty("os.name").toLowerCase();
         if (os.contains("win")) return "windows";
         if (os.contains("mac")) return "osx";
         return "linux";
     }
     
-    private void downloadFile(String urlStr, String destPath) throws Exception {
-        URL url = URI.create(urlStr).toURL();
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        conn.setConnectTimeout(DOWNLOAD_TIMEOUT);
-        conn.setReadTimeout(DOWNLOAD_TIMEOUT);
-        conn.setRequestProperty("User-Agent", LAUNCHER_NAME + "/" + LAUNCHER_VERSION);
+    static String getArchBits() {
+        return System.getProperty("os.arch").contains("64") ? "64" : "32";
+    }
+    
+    // Downloads into <dest>.part, resuming an earlier partial file with a Range request when the
+    // server honours it, and moves the result into place only once it is complete. The SHA-1 is
+    // computed on the stream as it is written; a wrong hash or size deletes the partial file and
+    // fails the attempt. Failures move on to the next mirror and are retried per RetryPolicy,
+    // each attempt resuming from what the last one wrote. Pass null / -1 when the source JSON gives neither. Returns the
+    // number of bytes fetched by the successful attempt.
+    static long downloadFile(String urlStr, String destPath, String sha1, long size) throws Exception {
+        try (InstallLock.Lease lease = InstallLock.FILES.acquire(destPath)) {
+            if (installedMeanwhile(lease, destPath, sha1, size)) return 0;
+            return RetryPolicy.run(urlStr, url -> downloadOnce(url, destPath, sha1, size));
+        }
+    }
+    
+    // Checked again once the lock is held: another launcher (or thread) may have published the
+    // file since the caller looked. Without a hash the caller wants a fresh copy regardless.
+    private static boolean installedMeanwhile(InstallLock.Lease lease, String destPath, String sha1, long size)
+            throws IOException {
+        if (sha1 == null || !isInstalled(destPath, sha1, size)) return false;
+        if (lease.waited()) lease.owner().reused.increment();
+        return true;
+    }
+    
+    private static long downloadFile(String urlStr, String destPath, String sha1, long size,
+                                     BooleanSupplier cancelled) throws Exception {
+        return RetryPolicy.run(urlStr, cancelled, url -> downloadOnce(url, destPath, sha1, size));
+    }
+    
+    private static long downloadOnce(String urlStr, String destPath, String sha1, long size) throws Exception {
+        Path dest = Paths.get(destPath);
+        Path part = Paths.get(destPath + ".part");
+        long started = System.nanoTime();
+        long fetched = -1;
+        
+        // A single-stream partial is cheaper to resume than to restart in segments
+        if (size >= SEGMENT_THRESHOLD && sha1 != null && !Files.exists(part)) {
+            try {
+                fetched = downloadSegmented(urlStr, dest, sha1, size);
+            } catch (RangeNotSupportedException e) {
+                System.out.println("Server ignored Range for " + urlStr + ", downloading in one stream");
+            }
+        }
+        if (fetched < 0) {
+            IoBuffer io = IoBuffer.acquire();
+            try {
+                fetched = downloadStream(urlStr, dest, part, sha1, size, io);
+            } finally {
+                io.release();
+            }
+        }
+        Mirrors.record(urlStr, fetched, System.nanoTime() - started);
+        return fetched;
+    }
+    
+    private static long downloadStream(String urlStr, Path dest, Path part, String sha1, long size, IoBuffer io)
+            throws IOException {
+        MessageDigest digest = sha1 != null ? io.sha1 : null;
+        
+        long offset = Files.isRegularFile(part) ? Files.size(part) : 0;
+        if (size >= 0 && offset > size) {
+            Files.delete(part);
+            offset = 0;
+        }
+        
+        boolean alreadyComplete = size >= 0 && offset == size;
+        HttpResponse<InputStream> response = alreadyComplete ? null : Http.get(urlStr, offset, sha1, size);
+        if (response != null && response.statusCode() != 206) {
+            offset = 0; // server ignored the Range header, start over
+        }
+        if (digest != null && offset > 0) {
+            updateDigest(digest, part); // only the resumed prefix is read back
+        }
+        
+        long fetched = 0;
+        if (response != null) {
+            try (InputStream in = response.body();
+                 FileChannel out = offset > 0
+                     ? openForWrite(part, StandardOpenOption.WRITE)
+                     : openForWrite(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                fetched = io.copy(in, out, offset, -1, digest != null);
+            }
+        }
+        
+        long total = offset + fetched;
+        String problem = null;
+        if (size >= 0 && total != size) {
+            problem = "expected " + size + " bytes but got " + total;
+        } else if (digest != null) {
+            String actual = HexFormat.of().formatHex(digest.digest());
+            if (!actual.equalsIgnoreCase(sha1)) problem = "SHA-1 mismatch, expected " + sha1 + " but got " + actual;
+        }
+        if (problem != null) {
+            Files.deleteIfExists(part);
+            throw new IOException(problem + " (" + urlStr + ")");
+        }
+        
+        moveIntoPlace(part, dest, sha1, size >= 0 ? size : total);
+        return fetched;
+    }
+    
+    // Small objects only. If the first attempt is still running once it has taken longer than the
+    // p95 of recent downloads, a second copy is started into its own temp file, from the next best
+    // mirror when there is one; whichever finishes first is kept and the other is cancelled.
+    // Returns the bytes fetched by the winner.
+    static long downloadHedged(String urlStr, String destPath, String sha1, long size) throws Exception {
+        try (InstallLock.Lease lease = InstallLock.FILES.acquire(destPath)) {
+            if (installedMeanwhile(lease, destPath, sha1, size)) return 0;
+            return race(urlStr, destPath, sha1, size);
+        }
+    }
+    
+    private static long race(String urlStr, String destPath, String sha1, long size) throws Exception {
+        long p95 = Math.max(SMALL_LATENCY.p95Nanos(), MIN_HEDGE_DELAY);
+        long start = System.nanoTime();
+        CompletionService<Long> race = new ExecutorCompletionService<>(DOWNLOAD_EXECUTOR);
+        AtomicBoolean settled = new AtomicBoolean();
+        Future<Long> primary = race.submit(() -> {
+            try {
+                return downloadFile(urlStr, destPath, sha1, size, settled::get);
+            } catch (Exception e) {
+                // Lost to the hedge: its partial file is of no further use
+                if (Files.isRegularFile(Paths.get(destPath))) Files.deleteIfExists(Paths.get(destPath + ".part"));
+                throw e;
+            }
+        });
+        
+        Future<Long> first = race.poll(p95, TimeUnit.NANOSECONDS);
+        Future<Long> hedge = null;
+        // The hedge is a request of its own, so it needs a permit the limiter can spare right now;
+        // at the limit it would only add to the load. The permit goes back when the hedge ends,
+        // or from the finally below if the race was over before the hedge got to run.
+        AtomicBoolean hedgeStarted = new AtomicBoolean();
+        if (first == null) {
+            if (DOWNLOAD_LIMITER.tryAcquire()) {
+                HEDGES.incrementAndGet();
+                String hedgeUrl = Mirrors.alternate(urlStr);
+                hedge = race.submit(() -> {
+                    if (!hedgeStarted.compareAndSet(false, true)) return 0L;
+                    Path part = Paths.get(destPath + ".hedge");
+                    IoBuffer io = IoBuffer.acquire();
+                    boolean congested = false;
+                    try {
+                        long hedgeStart = System.nanoTime();
+                        long bytes = downloadStream(hedgeUrl, Paths.get(destPath), part, sha1, size, io);
+                        Mirrors.record(hedgeUrl, bytes, System.nanoTime() - hedgeStart);
+                        return bytes;
+                    } catch (Exception e) {
+                        congested = AdaptiveLimiter.isCongestion(e);
+                        throw e;
+                    } finally {
+                        io.release();
+                        Files.deleteIfExists(part);
+                        DOWNLOAD_LIMITER.release(0, congested);
+                    }
+                });
+            }
+            first = race.take();
+        }
+        
+        try {
+            long bytes = first.get();
+            SMALL_LATENCY.record(System.nanoTime() - start);
+            return bytes;
+        } catch (ExecutionException e) {
+            if (hedge == null) throw unwrap(e);
+            // One copy failed; the other may still succeed
+            try {
+                return race.take().get();
+            } catch (ExecutionException second) {
+                throw unwrap(e);
+            }
+        } finally {
+            settled.set(true);
+            primary.cancel(true);
+            if (hedge != null) {
+                hedge.cancel(true);
+                if (hedgeStarted.compareAndSet(false, true)) DOWNLOAD_LIMITER.release(0, false);
+            }
+        }
+    }
+    
+    private static Exception unwrap(ExecutionException e) {
+        return e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+    }
+    
+    // Opens a download target. The parent directory is only created when the open fails for
+    // lack of it, so the common case costs no mkdir at all.
+    static FileChannel openForWrite(Path file, OpenOption... options) throws IOException {
+        try {
+            return FileChannel.open(file, options);
+        } catch (NoSuchFileException e) {
+            Files.createDirectories(file.getParent());
+            return FileChannel.open(file, options);
+        }
+    }
+    
+    // Publishes a verified download and records it in the install index
+    private static void moveIntoPlace(Path from, Path dest, String sha1, long size) throws IOException {
+        try {
+            Files.move(from, dest, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from, dest, StandardCopyOption.REPLACE_EXISTING);
+        }
+        if (sha1 != null) {
+            INSTALL_INDEX.record(dest.toString(), sha1, size, Files.getLastModifiedTime(dest).toMillis());
+        }
+    }
+    
+    static final class RangeNotSupportedException extends IOException {
+        private static final long serialVersionUID = 1L;
+        
+        RangeNotSupportedException(String url) {
+            super("Range requests not supported by " + url);
+        }
+    }
+    
+    // Scratch space for one download: a direct buffer, a staging array for the HTTP stream and a
+    // SHA-1 digest. Pooled rather than thread-local because download threads may be virtual and
+    // live for a single task, which would make a thread-local as costly as a fresh allocation.
+    static final class IoBuffer {
+        private static final int SIZE = 64 << 10;
+        private static final BlockingQueue<IoBuffer> POOL = new ArrayBlockingQueue<>(MAX_DOWNLOADS * 2);
+        
+        final MessageDigest sha1;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(SIZE);
+        private final byte[] staging = new byte[SIZE];
+        
+        private IoBuffer() {
+            try {
+                sha1 = MessageDigest.getInstance("SHA-1");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        
+        static IoBuffer acquire() {
+            IoBuffer io = POOL.poll();
+            if (io == null) return new IoBuffer();
+            io.sha1.reset();
+            return io;
+        }
+        
+        void release() {
+            POOL.offer(this);
+        }
+        
+        // Streams in to out starting at position with positional writes, feeding sha1 on the way
+        // when hash is set and pacing reads to the Bandwidth cap. Fails if more than limit bytes
+        // arrive (-1 for no limit). Each chunk is hashed from the array it was read into and
+        // copied once, into the direct buffer the channel writes from.
+        long copy(InputStream in, FileChannel out, long position, long limit, boolean hash) throws IOException {
+            long written = 0;
+            int n;
+            while ((n = in.read(staging, 0, SIZE)) != -1) {
+                if (limit >= 0 && written + n > limit) {
+                    throw new IOException("Received more than the expected " + limit + " bytes");
+                }
+                Bandwidth.acquire(n);
+                if (hash) sha1.update(staging, 0, n);
+                buffer.clear();
+                buffer.put(staging, 0, n).flip();
+                while (buffer.hasRemaining()) {
+                    written += out.write(buffer, position + written);
+                }
+            }
+            return written;
+        }
+    }
+    
+    // Splits a file of known size into byte ranges fetched concurrently into a preallocated
+    // <dest>.seg with positional writes, then verifies the whole file before moving it into place.
+    // Segments land out of order, so this path hashes after the fact rather than in-stream.
+    // The download's own limiter permit covers one stream of ranges, and every permit the limiter
+    // can spare at the start adds another; with none to spare the ranges are fetched in turn.
+    private static long downloadSegmented(String urlStr, Path dest, String sha1, long size) throws Exception {
+        Path seg = Paths.get(dest + ".seg");
+        int segments = (int) Math.min(MAX_SEGMENTS, Math.max(2, size / MIN_SEGMENT_SIZE));
+        long segmentLength = (size + segments - 1) / segments;
+        
+        try {
+            try (FileChannel channel = openForWrite(seg, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                channel.write(ByteBuffer.wrap(new byte[1]), size - 1);
+                
+                int extra = 0;
+                while (extra < segments - 1 && DOWNLOAD_LIMITER.tryAcquire()) extra++;
+                AtomicInteger next = new AtomicInteger();
+                AtomicBoolean failed = new AtomicBoolean();
+                List<CompletableFuture<Void>> streams = new ArrayList<>();
+                for (int s = 0; s <= extra; s++) {
+                    boolean ownPermit = s > 0;
+                    streams.add(CompletableFuture.runAsync(() -> {
+                        boolean congested = false;
+                        try {
+                            for (int i; !failed.get() && (i = next.getAndIncrement()) < segments; ) {
+                                long start = i * segmentLength;
+                                long end = Math.min(size, start + segmentLength) - 1;
+                                fetchRange(urlStr, channel, start, end, sha1, size);
+                            }
+                        } catch (IOException e) {
+                            failed.set(true);
+                            congested = AdaptiveLimiter.isCongestion(e);
+                            throw new UncheckedIOException(e);
+                        } finally {
+                            if (ownPermit) DOWNLOAD_LIMITER.release(0, congested);
+                        }
+                    }, DOWNLOAD_EXECUTOR));
+                }
+                try {
+                    CompletableFuture.allOf(streams.toArray(new CompletableFuture<?>[0])).join();
+                } catch (CompletionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof UncheckedIOException) throw ((UncheckedIOException) cause).getCause();
+                    throw e;
+                }
+            }
+            
+            String actual = sha1Of(seg);
+            if (!actual.equalsIgnoreCase(sha1)) {
+                throw new IOException("SHA-1 mismatch, expected " + sha1 + " but got " + actual + " (" + urlStr + ")");
+            }
+            moveIntoPlace(seg, dest, sha1, size);
+            return size;
+        } finally {
+            Files.deleteIfExists(seg);
+        }
+    }
+    
+    private static void fetchRange(String urlStr, FileChannel channel, long start, long end, String sha1, long size)
+            throws IOException {
+        HttpResponse<InputStream> response = Http.getRange(urlStr, start, end, sha1, size);
+        try (InputStream in = response.body()) {
+            if (response.statusCode() != 206) {
+                throw new RangeNotSupportedException(urlStr);
+            }
+            IoBuffer io = IoBuffer.acquire();
+            long position;
+            try {
+                position = start + io.copy(in, channel, start, end + 1 - start, false);
+            } finally {
+                io.release();
+            }
+            if (position != end + 1) {
+                throw new IOException("Segment " + start + "-" + end + " ended at " + position + " (" + urlStr + ")");
+            }
+        }
+    }
+    
+    // Answers from the install index without touching the disk when it can. Otherwise the fast
+    // path checks existence and size only; the file is hashed when no size is known or when
+    // fullVerify is on. Files that pass are added to the index.
+    static boolean isInstalled(String path, String sha1, long size) throws IOException {
+        if (!fullVerify && INSTALL_INDEX.contains(path, sha1, size)) return true;
+        
+        File file = new File(path);
+        if (!file.isFile()) {
+            INSTALL_INDEX.forget(path);
+            return false;
+        }
+        // A file that fails is no longer what the index recorded, whatever the index says
+        if ((size >= 0 && file.length() != size)
+                || (sha1 != null && (size < 0 || fullVerify) && !sha1.equalsIgnoreCase(sha1Of(file.toPath())))) {
+            INSTALL_INDEX.forget(path);
+            return false;
+        }
+        if (sha1 != null) {
+            INSTALL_INDEX.record(path, sha1, file.length(), file.lastModified());
+        }
+        return true;
+    }
+    
+    // For steps after the install graph, which has checked or downloaded every file: what it
+    // recorded stands even with fullVerify on, so nothing is hashed a second time
+    static boolean checkedInstalled(String path, String sha1, long size) throws IOException {
+        return INSTALL_INDEX.contains(path, sha1, size) || isInstalled(path, sha1, size);
+    }
+    
+    static String sha1Of(Path file) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            updateDigest(digest, file);
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    private static void updateDigest(MessageDigest digest, Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[8192];
+            int bytesRead;
+            while ((bytesRead = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, bytesRead);
+            }
+        }
+    }
+    
+    private static String withTrailingSlash(String url) {
+        return url.endsWith("/") ? url : url + "/";
+    }
+    
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // INSTALL ESTIMATE - dry run and free space preflight
+    // ═══════════════════════════════════════════════════════════════════════════════
+    record InstallEstimate(long files, long totalBytes, long missingFiles, long missingBytes) {}
+    
+    interface FileCheck {
+        // kind is "client", "library", "natives" or "asset"
+        boolean installed(String kind, String path, String sha1, long size) throws IOException;
+    }
+    
+    // What installing this profile would download, from the sizes in the version JSON and the
+    // asset index; nothing but (with fetchIndex) the asset index itself is downloaded. Without
+    // fetchIndex no index is read either: assets count as entirely missing at the total size the
+    // version JSON declares, and only the other files are checked.
+    static InstallEstimate estimateInstall(VersionProfile profile, boolean fetchIndex) throws Exception {
+        return estimateInstall(List.of(profile), fetchIndex);
+    }
+    
+    // Files shared between the profiles are counted once, as the installer fetches them once
+    static InstallEstimate estimateInstall(Collection<VersionProfile> profiles, boolean fetchIndex) throws Exception {
+        return estimateInstall(profiles, fetchIndex, (kind, path, sha1, size) -> isInstalled(path, sha1, size));
+    }
+    
+    static InstallEstimate estimateInstall(Collection<VersionProfile> profiles, boolean fetchIndex, FileCheck check)
+            throws Exception {
+        long[] tally = new long[4]; // files, bytes, missing files, missing bytes
+        Set<String> counted = new HashSet<>();
+        Set<String> indexes = new HashSet<>();
+        for (VersionProfile profile : profiles) {
+            Artifact client = profile.client();
+            if (client != null) {
+                count(tally, counted, check, "client", VERSIONS_DIR + "/" + profile.id() + "/" + profile.id() + ".jar",
+                      client.sha1(), client.size());
+            }
+            for (Artifact artifact : profile.classpathArtifacts()) {
+                count(tally, counted, check, "library", LIBRARIES_DIR + "/" + artifact.path(), artifact.sha1(),
+                      artifact.size());
+            }
+            for (Artifact artifact : profile.nativeArtifacts()) {
+                count(tally, counted, check, "natives", LIBRARIES_DIR + "/" + artifact.path(), artifact.sha1(),
+                      artifact.size());
+            }
+            
+            AssetIndexRef ref = profile.assetIndex();
+            if (ref == null || !indexes.add(ref.id())) continue;
+            if (!fetchIndex) {
+                tally[1] += ref.totalSize();
+                tally[3] += ref.totalSize();
+                continue;
+            }
+            Path indexPath = Paths.get(ASSETS_DIR, "indexes", ref.id() + ".json");
+            if (!isInstalled(indexPath.toString(), ref.sha1(), ref.size())) {
+                downloadFile(ref.url(), indexPath.toString(), ref.sha1(), ref.size());
+            }
+            AssetIndex index = AssetIndex.load(ref, indexPath);
+            for (int i = 0; i < index.count(); i++) {
+                AssetObject asset = index.object(i);
+                count(tally, counted, check, "asset", asset.path(), asset.hash(), asset.size());
+            }
+        }
+        return new InstallEstimate(tally[0], tally[1], tally[2], tally[3]);
+    }
+    
+    private static void count(long[] tally, Set<String> counted, FileCheck check, String kind, String path,
+                              String sha1, long size) throws IOException {
+        if (!counted.add(path)) return;
+        long bytes = Math.max(size, 0);
+        tally[0]++;
+        tally[1] += bytes;
+        if (!check.installed(kind, path, sha1, size)) {
+            tally[2]++;
+            tally[3] += bytes;
+        }
+    }
+    
+    // Refuses to start an install that can't fit, keeping DISK_MARGIN spare
+    static void checkFreeSpace(long needed) throws IOException {
+        long usable = Files.getFileStore(Paths.get(LAUNCHER_DIR)).getUsableSpace();
+        if (needed + DISK_MARGIN > usable) {
+            throw new IOException("Not enough disk space: " + formatBytes(needed) + " to download but only "
+                + formatBytes(usable) + " free in " + LAUNCHER_DIR);
+        }
+    }
+    
+    // --estimate <version>: prints what an install would fetch without downloading any game files
+    private static void printEstimate(String version) throws Exception {
+        VersionCatalog catalog = VersionCatalog.parse(JsonReader.of(
+            MetadataCache.fetchOrCached(VERSION_MANIFEST_URL, Paths.get(CACHE_DIR, "version_manifest.json"))));
+        String versionUrl = catalog.urls().get(version);
+        if (versionUrl == null) throw new IOException("Unknown version: " + version);
+        VersionProfile profile = VersionProfile.parse(JsonReader.decode(
+            MetadataCache.fetchOrCached(versionUrl, Paths.get(VERSIONS_DIR, version, version + ".json"))));
+        
+        InstallEstimate estimate = estimateInstall(profile, true);
+        long usable = Files.getFileStore(Paths.get(LAUNCHER_DIR)).getUsableSpace();
+        System.out.println("Version " + version + ": " + estimate.files() + " files, " + formatBytes(estimate.totalBytes()));
+        System.out.println("To download: " + estimate.missingFiles() + " files, " + formatBytes(estimate.missingBytes()));
+        System.out.println("Free space: " + formatBytes(usable)
+            + (estimate.missingBytes() + DISK_MARGIN > usable ? " (NOT ENOUGH)" : ""));
+        long cap = Bandwidth.rate();
+        if (cap > 0) {
+            System.out.println("Bandwidth cap: " + formatBytes(cap) + "/s, so at least "
+                + formatDuration(estimate.missingBytes() / cap));
+        }
+    }
+    
+    static String formatBytes(long bytes) {
+        if (bytes < 1024) return bytes + " B";
+        double value = bytes;
+        int unit = -1;
+        while (value >= 1024 && unit < 3) {
+            value /= 1024;
+            unit++;
+        }
+        return String.format("%.1f %sB", value, "KMGT".charAt(unit));
+    }
+    
+    static String formatDuration(long seconds) {
+        if (seconds >= 3600) return String.format("%d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60);
+        return String.format("%d:%02d", seconds / 60, seconds % 60);
+    }
+    
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // GAME LAUNCH
+    // ═══════════════════════════════════════════════════════════════════════════════
+    private void launchGame(String version, String username, int ram, LaunchPlan plan) {
+        try {
+            statusLabel.setText("Launching Minecraft " + version + "...");
+            progressLabel.setText("Game starting...");
+            
+            Process process = Installer.launch(version, username, ram, plan, ProcessBuilder.Redirect.INHERIT);
+            
+            new Thread(() -> {
+                try {
+                    int exitCode = process.waitFor();
+                    SwingUtilities.invokeLater(() -> {
+                        if (exitCode == 0) {
+                            statusLabel.setText("Game closed normally");
+                        } else {
+                            statusLabel.setText("Game exited with code: " + exitCode);
+                        }
+                        progressLabel.setText(" ");
+                        progressBar.setVisible(false);
+                    });
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }).start();
+            
+            progressLabel.setText("Minecraft is running!");
+            statusLabel.setText("Minecraft " + version + " is running");
+            
+        } catch (Exception e) {
+            e.printStackTrace();
+            JOptionPane.showMessageDialog(this, "Error launching Minecraft:\n" + e.getMessage(),
+                "Launch Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+    
+    private static String getJavaPath() {
+        String javaHome = System.getProperty("java.home");
+        String os = System.getProperty("os.name").toLowerCase();
+        
+        if (os.contains("win")) {
+            return javaHome + "\\bin\\java.exe";
+        } else {
+            return javaHome + "/bin/java";
+        }
+    }
+    
+    private static String validateUsername(String username) {
+        if (username == null || !username.matches("^[a-zA-Z0-9_]+$")) {
+            return "Player";
+        }
+        return username.length() > 16 ? username.substring(0, 16) : username;
+    }
+    
+    private static String generateOfflineUUID(String username) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("MD5");
+            byte[] digest = md.digest(("OfflinePlayer:" + username).getBytes());
+            
+            digest[6] = (byte) ((digest[6] & 0x0f) | 0x30);
+            digest[8] = (byte) ((digest[8] & 0x3f) | 0x80);
+            
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest) {
+                sb.append(String.format("%02x", b));
+            }
+            String hex = sb.toString();
+            
+            return hex.substring(0, 8) + "-" + hex.substring(8, 12) + "-" +
+                   hex.substring(12, 16) + "-" + hex.substring(16, 20) + "-" +
+                   hex.substring(20, 32);
+                   
+        } catch (Exception e) {
+            return "00000000-0000-0000-0000-000000000000";
+        }
+    }
+    
+    private void showSettings() {
+        JDialog dialog = new JDialog(this, "Settings", true);
+        dialog.setSize(450, 350);
+        dialog.setLocationRelativeTo(this);
+        
+        JPanel content = new JPanel();
+        content.setLayout(new BoxLayout(content, BoxLayout.Y_AXIS));
+        content.setBackground(BG_PANEL);
+        content.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
+        
+        JLabel titleLbl = new JLabel("Settings");
+        titleLbl.setFont(new Font("Segoe UI", Font.BOLD, 18));
+        titleLbl.setForeground(TEXT_WHITE);
+        titleLbl.setAlignmentX(Component.LEFT_ALIGNMENT);
+        content.add(titleLbl);
+        content.add(Box.createVerticalStrut(20));
+        
+        JLabel infoLbl = new JLabel("<html><body style='width: 350px'>" +
+            "<b>Game Directory:</b><br>" + LAUNCHER_DIR + "<br><br>" +
+            "<b>Libraries:</b><br>" + LIBRARIES_DIR + "<br><br>" +
+            "<b>Versions:</b><br>" + VERSIONS_DIR + "<br><br>" +
+            "<b>Natives:</b><br>" + NATIVES_DIR + "<br><br>" +
+            "<b>Assets:</b><br>" + ASSETS_DIR +
+            "</body></html>");
+        infoLbl.setFont(new Font("Segoe UI", Font.PLAIN, 11));
+        infoLbl.setForeground(TEXT_GRAY);
+        infoLbl.setAlignmentX(Component.LEFT_ALIGNMENT);
+        content.add(infoLbl);
+        
+        content.add(Box.createVerticalGlue());
+        
+        JButton openFolderBtn = new JButton("Open Game Folder");
+        openFolderBtn.setAlignmentX(Component.LEFT_ALIGNMENT);
+        openFolderBtn.addActionListener(e -> {
+            try {
+                Desktop.getDesktop().open(new File(LAUNCHER_DIR));
+            } catch (Exception ex) {
+                JOptionPane.showMessageDialog(dialog, "Cannot open folder: " + ex.getMessage());
+            }
+        });
+        content.add(openFolderBtn);
+        content.add(Box.createVerticalStrut(10));
+        
+        JButton verifyBtn = new JButton("Verify Game Files");
+        verifyBtn.setAlignmentX(Component.LEFT_ALIGNMENT);
+        verifyBtn.addActionListener(e -> {
+            verifyBtn.setEnabled(false);
+            new SwingWorker<Integer, Void>() {
+                @Override
+                protected Integer doInBackground() throws Exception {
+                    int dropped = INSTALL_INDEX.rescan();
+                    if (dropped > 0) LaunchPlan.invalidateAll();
+                    return dropped;
+                }
+                
+                @Override
+                protected void done() {
+                    verifyBtn.setEnabled(true);
+                    try {
+                        int dropped = get();
+                        JOptionPane.showMessageDialog(dialog, dropped == 0
+                            ? "All indexed files are present."
+                            : dropped + " files were missing or changed and will be downloaded again on the next launch.");
+                    } catch (Exception ex) {
+                        JOptionPane.showMessageDialog(dialog, "Verification failed: " + ex.getMessage());
+                    }
+                }
+            }.execute();
+        });
+        content.add(verifyBtn);
+        content.add(Box.createVerticalStrut(10));
+        
+        JButton closeBtn = new JButton("Close");
+        closeBtn.setAlignmentX(Component.LEFT_ALIGNMENT);
+        closeBtn.addActionListener(e -> dialog.dispose());
+        content.add(closeBtn);
+        
+        dialog.setContentPane(content);
+        dialog.setVisible(true);
+    }
+    
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // JSON READER - single pass, in place over a char[] or streaming from a Reader
+    // ═══════════════════════════════════════════════════════════════════════════════
+    static final class JsonReader {
+        enum Token { BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT }
+        
+        private char[] buf;
+        private int limit;
+        private int pos;
+        
+        // Streaming mode only: where the buffer is refilled from, how much was already discarded,
+        // and the start of the token being read, which a refill must keep (-1 when none)
+        private final Reader source;
+        private long discarded;
+        private int mark = -1;
+        
+        // Recently seen member names, so repeated keys like "hash" and "size" are not reallocated
+        private final String[] names = new String[64];
+        private final StringBuilder scratch = new StringBuilder();
+        
+        JsonReader(char[] buf) {
+            this(buf, 0, buf.length);
+        }
+        
+        JsonReader(char[] buf, int offset, int length) {
+            this.buf = buf;
+            this.pos = offset;
+            this.limit = offset + length;
+            this.source = null;
+        }
+        
+        // Reads as the characters arrive; memory stays at one buffer plus the longest token
+        JsonReader(Reader source) {
+            this.buf = new char[8192];
+            this.source = source;
+        }
+        
+        static JsonReader of(byte[] data) {
+            return new JsonReader(decode(data));
+        }
+        
+        static JsonReader of(Path file) throws IOException {
+            return of(Files.readAllBytes(file));
+        }
+        
+        static JsonReader of(InputStream in) {
+            return new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        }
+        
+        static char[] decode(byte[] data) {
+            CharBuffer chars = StandardCharsets.UTF_8.decode(ByteBuffer.wrap(data));
+            if (chars.position() == 0 && chars.remaining() == chars.array().length) {
+                return chars.array();
+            }
+            return Arrays.copyOfRange(chars.array(), chars.position(), chars.limit());
+        }
+        
+        Token peek() throws IOException {
+            int c = skipSeparators();
+            switch (c) {
+                case -1: return Token.END_DOCUMENT;
+                case '{': return Token.BEGIN_OBJECT;
+                case '}': return Token.END_OBJECT;
+                case '[': return Token.BEGIN_ARRAY;
+                case ']': return Token.END_ARRAY;
+                case '"': return Token.STRING;
+                case 't': case 'f': return Token.BOOLEAN;
+                case 'n': return Token.NULL;
+                default:
+                    if (c == '-' || (c >= '0' && c <= '9')) return Token.NUMBER;
+                    throw syntaxError("Unexpected character '" + (char) c + "'");
+            }
+        }
+        
+        void beginObject() throws IOException { expect('{'); }
+        void endObject() throws IOException { expect('}'); }
+        void beginArray() throws IOException { expect('['); }
+        void endArray() throws IOException { expect(']'); }
+        
+        boolean hasNext() throws IOException {
+            int c = skipSeparators();
+            return c != '}' && c != ']' && c != -1;
+        }
+        
+        String nextName() throws IOException {
+            expect('"');
+            mark = pos;
+            int hash = 0;
+            while (more()) {
+                char c = buf[pos];
+                if (c == '"') break;
+                if (c == '\\') {
+                    pos = mark;
+                    mark = -1;
+                    return readEscaped();
+                }
+                hash = 31 * hash + c;
+                pos++;
+            }
+            if (pos >= limit) throw syntaxError("Unterminated name");
+            int start = mark;
+            int length = pos - start;
+            mark = -1;
+            pos++;
+            
+            int slot = hash & (names.length - 1);
+            String cached = names[slot];
+            if (cached != null && matches(cached, start, length)) {
+                return cached;
+            }
+            String name = new String(buf, start, length);
+            names[slot] = name;
+            return name;
+        }
+        
+        void skipName() throws IOException {
+            skipString();
+        }
+        
+        // Skips members of the current object until the given name; leaves the reader on its value
+        boolean findName(String name) throws IOException {
+            while (hasNext()) {
+                if (nextName().equals(name)) return true;
+                skipValue();
+            }
+            return false;
+        }
+        
+        String nextString() throws IOException {
+            expect('"');
+            mark = pos;
+            while (more()) {
+                char c = buf[pos];
+                if (c == '"') {
+                    String value = new String(buf, mark, pos - mark);
+                    mark = -1;
+                    pos++;
+                    return value;
+                }
+                if (c == '\\') {
+                    pos = mark;
+                    mark = -1;
+                    return readEscaped();
+                }
+                pos++;
+            }
+            throw syntaxError("Unterminated string");
+        }
+        
+        long nextLong() throws IOException {
+            skipSeparators();
+            mark = pos;
+            boolean negative = false;
+            if (more() && buf[pos] == '-') {
+                negative = true;
+                pos++;
+            }
+            long value = 0;
+            while (more() && buf[pos] >= '0' && buf[pos] <= '9') {
+                value = value * 10 + (buf[pos++] - '0');
+            }
+            if (more() && (buf[pos] == '.' || buf[pos] == 'e' || buf[pos] == 'E')) {
+                while (more() && "+-.eE0123456789".indexOf(buf[pos]) >= 0) pos++;
+                int start = mark;
+                mark = -1;
+                return (long) Double.parseDouble(new String(buf, start, pos - start));
+            }
+            int start = mark;
+            mark = -1;
+            if (pos == start || (negative && pos == start + 1)) throw syntaxError("Expected a number");
+            return negative ? -value : value;
+        }
+        
+        boolean nextBoolean() throws IOException {
+            if (peek() != Token.BOOLEAN) throw syntaxError("Expected a boolean");
+            boolean value = buf[pos] == 't';
+            require(value ? 4 : 5);
+            pos += value ? 4 : 5;
+            return value;
+        }
+        
+        void nextNull() throws IOException {
+            if (peek() != Token.NULL) throw syntaxError("Expected null");
+            require(4);
+            pos += 4;
+        }
+        
+        void skipValue() throws IOException {
+            int depth = 0;
+            do {
+                int c = skipSeparators();
+                if (c == -1) throw syntaxError("Unexpected end of document");
+                if (c == '{' || c == '[') {
+                    depth++;
+                    pos++;
+                } else if (c == '}' || c == ']') {
+                    depth--;
+                    pos++;
+                } else if (c == '"') {
+                    skipString();
+                } else {
+                    while (more() && "{}[],: \t\r\n".indexOf(buf[pos]) < 0) pos++;
+                }
+            } while (depth > 0);
+        }
+        
+        private void skipString() throws IOException {
+            expect('"');
+            while (more()) {
+                char c = buf[pos++];
+                if (c == '"') return;
+                if (c == '\\') {
+                    require(1);
+                    pos++;
+                }
+            }
+            throw syntaxError("Unterminated string");
+        }
+        
+        private String readEscaped() throws IOException {
+            scratch.setLength(0);
+            while (more()) {
+                char c = buf[pos++];
+                if (c == '"') return scratch.toString();
+                if (c != '\\') {
+                    scratch.append(c);
+                    continue;
+                }
+                if (!more()) break;
+                char e = buf[pos++];
+                switch (e) {
+                    case 'n': scratch.append('\n'); break;
+                    case 't': scratch.append('\t'); break;
+                    case 'r': scratch.append('\r'); break;
+                    case 'b': scratch.append('\b'); break;
+                    case 'f': scratch.append('\f'); break;
+                    case 'u':
+                        require(4);
+                        scratch.append((char) Integer.parseInt(new String(buf, pos, 4), 16));
+                        pos += 4;
+                        break;
+                    default: scratch.append(e);
+                }
+            }
+            throw syntaxError("Unterminated string");
+        }
+        
+        private boolean matches(String s, int start, int length) {
+            if (s.length() != length) return false;
+            for (int i = 0; i < length; i++) {
+                if (s.charAt(i) != buf[start + i]) return false;
+            }
+            return true;
+        }
+        
+        private int skipSeparators() throws IOException {
+            while (more()) {
+                char c = buf[pos];
+                if (c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == ',' || c == ':') {
+                    pos++;
+                } else {
+                    return c;
+                }
+            }
+            return -1;
+        }
+        
+        private void expect(char c) throws IOException {
+            if (skipSeparators() != c) throw syntaxError("Expected '" + c + "'");
+            pos++;
+        }
+        
+        private boolean more() throws IOException {
+            return pos < limit || fill();
+        }
+        
+        private void require(int n) throws IOException {
+            while (limit - pos < n) {
+                if (!fill()) throw syntaxError("Unexpected end of document");
+            }
+        }
+        
+        // Drops everything before the current token, then reads more; grows the buffer only when
+        // a single token fills it
+        private boolean fill() throws IOException {
+            if (source == null) return false;
+            int keep = mark >= 0 ? mark : pos;
+            if (keep > 0) {
+                System.arraycopy(buf, keep, buf, 0, limit - keep);
+                limit -= keep;
+                pos -= keep;
+                if (mark >= 0) mark -= keep;
+                discarded += keep;
+            }
+            if (limit == buf.length) {
+                buf = Arrays.copyOf(buf, buf.length * 2);
+            }
+            int n = source.read(buf, limit, buf.length - limit);
+            if (n <= 0) return false;
+            limit += n;
+            return true;
+        }
+        
+        private IOException syntaxError(String message) {
+            return new IOException("Malformed JSON at offset " + (discarded + pos) + ": " + message);
+        }
+    }
+    
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // VERSION CATALOG - immutable snapshot of the version manifest
+    // ═══════════════════════════════════════════════════════════════════════════════
+    record VersionCatalog(Map<String, String> urls, Map<String, List<String>> categories) {
+        static final List<String> CATEGORIES = List.of(
+            "Latest Release", "Latest Snapshot", "Release", "Snapshot", "Old Beta", "Old Alpha");
+        static final VersionCatalog EMPTY = new VersionCatalog(Map.of(), Map.of());
+        
+        int size() {
+            return urls.size();
+        }
+        
+        static VersionCatalog parse(JsonReader reader) throws IOException {
+            String latestRelease = null;
+            String latestSnapshot = null;
+            List<String[]> entries = new ArrayList<>();
+            
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (name.equals("latest")) {
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        String key = reader.nextName();
+                        if (key.equals("release")) latestRelease = reader.nextString();
+                        else if (key.equals("snapshot")) latestSnapshot = reader.nextString();
+                        else reader.skipValue();
+                    }
+                    reader.endObject();
+                } else if (name.equals("versions")) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        String id = null, type = null, versionUrl = null;
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            String key = reader.nextName();
+                            if (key.equals("id")) id = reader.nextString();
+                            else if (key.equals("type")) type = reader.nextString();
+                            else if (key.equals("url")) versionUrl = reader.nextString();
+                            else reader.skipValue();
+                        }
+                        reader.endObject();
+                        if (id != null && versionUrl != null) {
+                            entries.add(new String[]{id, type, versionUrl});
+                        }
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            
+            Map<String, String> urls = new HashMap<>();
+            Map<String, List<String>> categories = new LinkedHashMap<>();
+            for (String category : CATEGORIES) {
+                categories.put(category, new ArrayList<>());
+            }
+            
+            for (String[] entry : entries) {
+                String id = entry[0];
+                String type = entry[1];
+                urls.put(id, entry[2]);
+                
+                if (id.equals(latestRelease)) {
+                    categories.get("Latest Release").add(id);
+                }
+                if (id.equals(latestSnapshot)) {
+                    categories.get("Latest Snapshot").add(id);
+                }
+                
+                if ("release".equals(type)) {
+                    categories.get("Release").add(id);
+                } else if ("snapshot".equals(type)) {
+                    categories.get("Snapshot").add(id);
+                } else if ("old_beta".equals(type)) {
+                    categories.get("Old Beta").add(id);
+                } else if ("old_alpha".equals(type)) {
+                    categories.get("Old Alpha").add(id);
+                }
+            }
+            
+            Map<String, List<String>> frozen = new LinkedHashMap<>();
+            categories.forEach((category, ids) -> frozen.put(category, List.copyOf(ids)));
+            return new VersionCatalog(Map.copyOf(urls), Collections.unmodifiableMap(frozen));
+        }
+    }
+    
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // VERSION PROFILE - parsed once per launch, rules already applied for this OS
+    // ═══════════════════════════════════════════════════════════════════════════════
+    record Artifact(String path, String url, String sha1, long size) {}
+    
+    record Library(String name, Artifact artifact, Artifact natives) {}
+    
+    record AssetIndexRef(String id, String url, String sha1, long size, long totalSize) {}
+    
+    record Rule(boolean allow, String osName, String osArch) {
+        boolean matches(String os, String archBits) {
+            if (osName != null && !osName.equals(os)) return false;
+            // Mojang only uses "x86" here, meaning a 32-bit JVM
+            return osArch == null || ("x86".equals(osArch) && "32".equals(archBits));
+        }
+        
+        static boolean allows(List<Rule> rules, String os, String archBits) {
+            if (rules.isEmpty()) return true;
+            boolean allowed = false;
+            for (Rule rule : rules) {
+                if (rule.matches(os, archBits)) allowed = rule.allow();
+            }
+            return allowed;
+        }
+    }
+    
+    record VersionProfile(String id, String mainClass, AssetIndexRef assetIndex,
+                          Map<String, Artifact> downloads, List<Library> libraries) {
+        
+        Artifact client() {
+            return downloads.get("client");
+        }
+        
+        List<Artifact> classpathArtifacts() {
+            List<Artifact> artifacts = new ArrayList<>();
+            for (Library library : libraries) {
+                if (library.artifact() != null) artifacts.add(library.artifact());
+            }
+            return artifacts;
+        }
+        
+        List<Artifact> nativeArtifacts() {
+            List<Artifact> artifacts = new ArrayList<>();
+            for (Library library : libraries) {
+                if (library.natives() != null) artifacts.add(library.natives());
+            }
+            return artifacts;
+        }
+        
+        static VersionProfile parse(char[] json) throws IOException {
+            return parse(json, getOsName(), getArchBits());
+        }
+        
+        static VersionProfile parse(char[] json, String osName, String archBits) throws IOException {
+            String id = null;
+            String mainClass = "net.minecraft.client.main.Main";
+            AssetIndexRef assetIndex = null;
+            Map<String, Artifact> downloads = new HashMap<>();
+            List<Library> libraries = new ArrayList<>();
+            
+            JsonReader reader = new JsonReader(json);
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "id":
+                        id = reader.nextString();
+                        break;
+                    case "mainClass":
+                        mainClass = reader.nextString();
+                        break;
+                    case "assetIndex":
+                        assetIndex = readAssetIndex(reader);
+                        break;
+                    case "downloads":
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            String key = reader.nextName();
+                            Artifact artifact = readArtifact(reader);
+                            if (artifact != null) downloads.put(key, artifact);
+                        }
+                        reader.endObject();
+                        break;
+                    case "libraries":
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            Library library = readLibrary(reader, osName, archBits);
+                            if (library != null) libraries.add(library);
+                        }
+                        reader.endArray();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+            
+            return new VersionProfile(id, mainClass, assetIndex, Map.copyOf(downloads), List.copyOf(libraries));
+        }
+        
+        // Returns null when the library's rules exclude this platform
+        private static Library readLibrary(JsonReader reader, String osName, String archBits) throws IOException {
+            String name = null;
+            Artifact artifact = null;
+            Map<String, Artifact> classifiers = Map.of();
+            String nativeKey = null;
+            List<Rule> rules = List.of();
+            
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "name":
+                        name = reader.nextString();
+                        break;
+                    case "downloads":
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            String key = reader.nextName();
+                            if (key.equals("artifact")) {
+                                artifact = readArtifact(reader);
+                            } else if (key.equals("classifiers")) {
+                                classifiers = new HashMap<>();
+                                reader.beginObject();
+                                while (reader.hasNext()) {
+                                    String classifier = reader.nextName();
+                                    Artifact entry = readArtifact(reader);
+                                    if (entry != null) classifiers.put(classifier, entry);
+                                }
+                                reader.endObject();
+                            } else {
+                                reader.skipValue();
+                            }
+                        }
+                        reader.endObject();
+                        break;
+                    case "natives":
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            if (reader.nextName().equals(osName)) nativeKey = reader.nextString();
+                            else reader.skipValue();
+                        }
+                        reader.endObject();
+                        break;
+                    case "rules":
+                        rules = readRules(reader);
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+            
+            if (!Rule.allows(rules, osName, archBits)) return null;
+            
+            Artifact natives = null;
+            if (!classifiers.isEmpty()) {
+                String key = nativeKey != null ? nativeKey.replace("${arch}", archBits) : "natives-" + osName;
+                natives = classifiers.get(key);
+            }
+            if (artifact != null && artifact.path() == null) artifact = null;
+            if (natives != null && natives.path() == null) natives = null;
+            return new Library(name, artifact, natives);
+        }
+        
+        private static Artifact readArtifact(JsonReader reader) throws IOException {
+            String path = null, url = null, sha1 = null;
+            long size = -1;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "path": path = reader.nextString(); break;
+                    case "url": url = reader.nextString(); break;
+                    case "sha1": sha1 = reader.nextString(); break;
+                    case "size": size = reader.nextLong(); break;
+                    default: reader.skipValue();
+                }
+            }
+            reader.endObject();
+            return url != null ? new Artifact(path, url, sha1, size) : null;
+        }
+        
+        private static AssetIndexRef readAssetIndex(JsonReader reader) throws IOException {
+            String id = null, url = null, sha1 = null;
+            long size = -1, totalSize = -1;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "id": id = reader.nextString(); break;
+                    case "url": url = reader.nextString(); break;
+                    case "sha1": sha1 = reader.nextString(); break;
+                    case "size": size = reader.nextLong(); break;
+                    case "totalSize": totalSize = reader.nextLong(); break;
+                    default: reader.skipValue();
+                }
+            }
+            reader.endObject();
+            return id != null && url != null ? new AssetIndexRef(id, url, sha1, size, totalSize) : null;
+        }
+        
+        private static List<Rule> readRules(JsonReader reader) throws IOException {
+            List<Rule> rules = new ArrayList<>();
+            reader.beginArray();
+            while (reader.hasNext()) {
+                boolean allow = false;
+                String osName = null, osArch = null;
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String key = reader.nextName();
+                    if (key.equals("action")) {
+                        allow = "allow".equals(reader.nextString());
+                    } else if (key.equals("os")) {
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            String osKey = reader.nextName();
+                            if (osKey.equals("name")) osName = reader.nextString();
+                            else if (osKey.equals("arch")) osArch = reader.nextString();
+                            else reader.skipValue();
+                        }
+                        reader.endObject();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+                rules.add(new Rule(allow, osName, osArch));
+            }
+            reader.endArray();
+            return rules;
+        }
+    }
+    
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // INSTALL GRAPH - named tasks that start as soon as their dependencies finish
+    // ═══════════════════════════════════════════════════════════════════════════════
+    static final class InstallGraph {
+        interface Step {
+            void run() throws Exception;
+        }
+        
+        private final Executor executor;
+        private final Map<String, CompletableFuture<Void>> tasks = new LinkedHashMap<>();
+        
+        InstallGraph(Executor executor) {
+            this.executor = executor;
+        }
+        
+        // Dependencies must already have been added, which keeps the graph acyclic
+        InstallGraph add(String name, Step step, String... dependsOn) {
+            if (tasks.containsKey(name)) throw new IllegalArgumentException("Duplicate task: " + name);
+            CompletableFuture<?>[] deps = new CompletableFuture<?>[dependsOn.length];
+            for (int i = 0; i < dependsOn.length; i++) {
+                deps[i] = tasks.get(dependsOn[i]);
+                if (deps[i] == null) throw new IllegalArgumentException("Unknown dependency: " + dependsOn[i]);
+            }
+            tasks.put(name, CompletableFuture.allOf(deps).thenRunAsync(() -> {
+                try {
+                    step.run();
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, executor));
+            return this;
+        }
+        
+        // Waits for every task and rethrows the first failure
+        void await() throws Exception {
+            try {
+                CompletableFuture.allOf(tasks.values().toArray(new CompletableFuture<?>[0])).join();
+            } catch (CompletionException e) {
+                Throwable cause = e;
+                while (cause instanceof CompletionException && cause.getCause() != null) {
+                    cause = cause.getCause();
+                }
+                if (cause instanceof Exception) throw (Exception) cause;
+                throw e;
+            }
+        }
+    }
+    
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // ADAPTIVE LIMITER - AIMD on measured throughput and congestion errors
+    // ═══════════════════════════════════════════════════════════════════════════════
+    static final class AdaptiveLimiter {
+        private final int minLimit;
+        private final int maxLimit;
+        private int limit;
+        private int inFlight;
+        
+        // Throughput over the last window of roughly `limit` completed downloads
+        private int windowSamples;
+        private long windowBytes;
+        private long windowStart = System.nanoTime();
+        private double bestRate;
+        private boolean slowStart = true;
+        
+        AdaptiveLimiter(int initial, int minLimit, int maxLimit) {
+            this.minLimit = Math.max(1, minLimit);
+            this.maxLimit = Math.max(this.minLimit, maxLimit);
+            this.limit = Math.max(this.minLimit, Math.min(this.maxLimit, initial));
+        }
+        
+        synchronized int getLimit() {
+            return limit;
+        }
+        
+        synchronized int getInFlight() {
+            return inFlight;
+        }
+        
+        synchronized void acquire() throws InterruptedException {
+            while (inFlight >= limit) {
+                wait();
+            }
+            inFlight++;
+        }
+        
+        // For an extra request on behalf of a download that already holds a permit (a segment, a
+        // hedge): waiting could deadlock, with every permit held by a download waiting on extras.
+        // Extras are released with no bytes, as the download they belong to reports its own.
+        synchronized boolean tryAcquire() {
+            if (inFlight >= limit) return false;
+            inFlight++;
+            return true;
+        }
+        
+        synchronized void release(long bytes, boolean congested) {
+            inFlight--;
+            if (congested) {
+                limit = Math.max(minLimit, limit * 3 / 4);
+                slowStart = false;
+                resetWindow();
+            } else if (bytes > 0) {
+                windowBytes += bytes;
+                if (++windowSamples >= limit) {
+                    adjust();
+                }
+            }
+            notifyAll();
+        }
+        
+        private void adjust() {
+            double rate = windowBytes * 1e9 / Math.max(1, System.nanoTime() - windowStart);
+            if (rate < bestRate * 0.8) {
+                // More requests in flight are now costing throughput
+                slowStart = false;
+                limit = Math.max(minLimit, limit - 1);
+            } else if (slowStart && rate > bestRate * 1.05) {
+                limit = Math.min(maxLimit, limit + Math.max(1, limit / 4));
+            } else {
+                slowStart = false;
+                limit = Math.min(maxLimit, limit + 1);
+            }
+            // Let the reference decay so a link that got slower is not judged against its old best
+            bestRate = Math.max(rate, bestRate * 0.95);
+            resetWindow();
+        }
+        
+        private void resetWindow() {
+            windowSamples = 0;
+            windowBytes = 0;
+            windowStart = System.nanoTime();
+        }
+        
+        // Timeouts, refused connections and server overload mean back off; a 404 does not
+        static boolean isCongestion(Exception e) {
+            if (e instanceof Http.HttpStatusException) {
+                int status = ((Http.HttpStatusException) e).status;
+                return status == 429 || status >= 500;
+            }
+            return e instanceof HttpTimeoutException || e instanceof SocketTimeoutException
+                || e instanceof ConnectException;
+        }
+    }
+    
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // BANDWIDTH - lock-free GCRA throttle shared by every download and launcher process
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // -Dctlauncher.bandwidth=2M caps downloads at 2 MB/s (K, M or G; 0 or "off" for no cap).
+    // -Dctlauncher.bandwidthSchedule=08:00-18:00=1M,18:00-08:00=off overrides that by time of
+    // day; the first window containing the current time wins. The cap is split evenly between the
+    // installs (launcher processes) downloading at the time, and each install's share between its
+    // streams, so one running 64 streams gets no more than one running 8.
+    static final class Bandwidth {
+        record Window(int from, int to, long rate) {
+            boolean contains(int minute) {
+                return from <= to ? minute >= from && minute < to : minute >= from || minute < to;
+            }
+        }
+        
+        // Idle time banks at most this much sending; a slot further ahead than MAX_DEBT is stale
+        private static final long BURST_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+        private static final long MAX_DEBT_NANOS = TimeUnit.SECONDS.toNanos(10);
+        private static final long RECHECK_NANOS = TimeUnit.SECONDS.toNanos(1);
+        // An install that paid for bytes within ACTIVE counts towards the split, recounted every SEAT_REFRESH
+        private static final long ACTIVE_NANOS = TimeUnit.SECONDS.toNanos(1);
+        private static final long SEAT_REFRESH_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+        private static final int SEATS = 32;
+        private static final long PID = ProcessHandle.current().pid();
+        private static final VarHandle SLOT = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+        // Wall-clock nanoseconds, so processes sharing the slot agree on what "now" is
+        private static final long EPOCH_OFFSET = System.currentTimeMillis() * 1_000_000 - System.nanoTime();
+        
+        private static final long BASE_RATE = parseRate(System.getProperty("ctlauncher.bandwidth", "off"));
+        private static final List<Window> SCHEDULE = parseSchedule(System.getProperty("ctlauncher.bandwidthSchedule", ""));
+        // The same as Shared.TAT for this install alone, run at its share of the cap
+        private static final ByteBuffer LOCAL_TAT = ByteBuffer.allocateDirect(Long.BYTES);
+        
+        private static volatile long rate = BASE_RATE;
+        private static volatile long nextCheck = System.nanoTime();
+        private static final AtomicLong nextSeatRefresh = new AtomicLong(System.nanoTime());
+        private static volatile int installs = 1;
+        
+        private Bandwidth() {}
+        
+        // When the bytes reserved so far will have been paid for (GCRA's theoretical arrival
+        // time), kept in a file every launcher process maps so concurrent installs share the cap.
+        // After it come SEATS pairs of (pid, last active) for the installs taking part. A holder
+        // class, so the file is only created and mapped once a capped download first pays.
+        private static final class Shared {
+            static final ByteBuffer TAT = openSlot(Paths.get(LAUNCHER_DIR, "bandwidth.slot"));
+        }
+        
+        // Bytes per second allowed right now, 0 for no cap. The schedule is consulted at most once a second.
+        static long rate() {
+            long now = System.nanoTime();
+            if (now - nextCheck >= 0) {
+                nextCheck = now + RECHECK_NANOS;
+                rate = scheduledRate();
+            }
+            return rate;
+        }
+        
+        // Pays for bytes just read. The bytes first take the next slice of this install's own
+        // timeline, which runs at its share of the cap, so its streams are served in turn and
+        // together never ask the shared timeline for more than that share. Then they take a
+        // slice of the shared timeline, which holds every install to the cap as a whole. One CAS
+        // and one sleep per timeline; no locks, nothing allocated.
+        static void acquire(int bytes) throws InterruptedIOException {
+            long rate = rate();
+            if (rate <= 0 || bytes <= 0) return;
+            long cost = bytes * 1_000_000_000L / rate;
+            // Only this process writes the local timeline, so it can't go stale and has no debt limit
+            sleep(reserve(LOCAL_TAT, cost * activeInstalls(), Long.MAX_VALUE));
+            sleep(reserve(Shared.TAT, cost, MAX_DEBT_NANOS));
+        }
+        
+        // Claims the next cost nanoseconds of a timeline; returns how long until they start
+        private static long reserve(ByteBuffer timeline, long cost, long maxDebt) {
+            long now;
+            long start;
+            long tat;
+            do {
+                now = System.nanoTime() + EPOCH_OFFSET;
+                tat = (long) SLOT.getVolatile(timeline, 0);
+                start = tat - now > maxDebt ? now : Math.max(tat, now - BURST_NANOS);
+            } while (!SLOT.compareAndSet(timeline, 0, tat, start + cost));
+            return start - now;
+        }
+        
+        private static void sleep(long nanos) throws InterruptedIOException {
+            long deadline = System.nanoTime() + nanos;
+            for (long wait = nanos; wait > 0; wait = deadline - System.nanoTime()) {
+                LockSupport.parkNanos(wait);
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("Interrupted while throttled");
+                }
+            }
+        }
+        
+        // Installs sharing the cap, this one included. Every SEAT_REFRESH one thread marks this
+        // process's seat active (taking a free or abandoned seat first) and recounts the seats.
+        // Without a seat, the count is one more than the installs that have one.
+        private static int activeInstalls() {
+            long refresh = nextSeatRefresh.get();
+            long nanos = System.nanoTime();
+            if (nanos - refresh < 0 || !nextSeatRefresh.compareAndSet(refresh, nanos + SEAT_REFRESH_NANOS)) {
+                return installs;
+            }
+            ByteBuffer slot = Shared.TAT;
+            long now = nanos + EPOCH_OFFSET;
+            int active = 0;
+            int free = -1;
+            long freeOwner = 0;
+            boolean seated = false;
+            for (int i = 0; i < SEATS; i++) {
+                int at = seat(i);
+                long owner = (long) SLOT.getVolatile(slot, at);
+                long seen = (long) SLOT.getVolatile(slot, at + Long.BYTES);
+                if (owner == PID && !seated) {
+                    SLOT.setVolatile(slot, at + Long.BYTES, now);
+                    seated = true;
+                } else if (owner != 0 && now - seen < ACTIVE_NANOS) {
+                    active++;
+                } else if (free < 0) {
+                    free = i;
+                    freeOwner = owner;
+                }
+            }
+            if (!seated && free >= 0 && SLOT.compareAndSet(slot, seat(free), freeOwner, PID)) {
+                SLOT.setVolatile(slot, seat(free) + Long.BYTES, now);
+            }
+            return installs = active + 1;
+        }
+        
+        private static int seat(int i) {
+            return Long.BYTES * (1 + 2 * i);
+        }
+        
+        // The slower of what is being measured and what the cap allows, for ETAs
+        static double effectiveRate(double measured) {
+            long cap = rate();
+            return cap > 0 ? Math.min(measured, cap) : measured;
+        }
+        
+        private static long scheduledRate() {
+            if (SCHEDULE.isEmpty()) return BASE_RATE;
+            LocalTime time = LocalTime.now();
+            int minute = time.getHour() * 60 + time.getMinute();
+            for (Window window : SCHEDULE) {
+                if (window.contains(minute)) return window.rate();
+            }
+            return BASE_RATE;
+        }
+        
+        static long parseRate(String value) {
+            String v = value.trim().toUpperCase(Locale.ROOT);
+            if (v.isEmpty() || v.equals("OFF") || v.equals("UNLIMITED")) return 0;
+            int shift = switch (v.charAt(v.length() - 1)) {
+                case 'K' -> 10;
+                case 'M' -> 20;
+                case 'G' -> 30;
+                default -> 0;
+            };
+            if (shift > 0) v = v.substring(0, v.length() - 1);
+            try {
+                return (long) (Double.parseDouble(v) * (1L << shift));
+            } catch (NumberFormatException e) {
+                System.err.println("Ignoring bandwidth setting " + value + ": not a rate");
+                return 0;
+            }
+        }
+        
+        private static List<Window> parseSchedule(String spec) {
+            List<Window> windows = new ArrayList<>();
+            for (String entry : spec.split(",")) {
+                if (entry.isBlank()) continue;
+                try {
+                    String[] parts = entry.trim().split("[-=]");
+                    windows.add(new Window(minuteOfDay(parts[0]), minuteOfDay(parts[1]), parseRate(parts[2])));
+                } catch (RuntimeException e) {
+                    System.err.println("Ignoring bandwidth schedule entry " + entry + ": expected HH:MM-HH:MM=rate");
+                }
+            }
+            return List.copyOf(windows);
+        }
+        
+        private static int minuteOfDay(String time) {
+            LocalTime parsed = LocalTime.parse(time.trim());
+            return parsed.getHour() * 60 + parsed.getMinute();
+        }
+        
+        // A file mapping shares the slot with other launcher processes; failing that, this
+        // process keeps a private one
+        private static ByteBuffer openSlot(Path file) {
+            try {
+                Files.createDirectories(file.getParent());
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                                                            StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    return channel.map(FileChannel.MapMode.READ_WRITE, 0, seat(SEATS));
+                }
+            } catch (IOException | UnsupportedOperationException e) {
+                return ByteBuffer.allocateDirect(seat(SEATS));
+            }
+        }
+    }
+    
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // MIRRORS - ordered sources per resource type, ranked by measured throughput
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // Configured in LAUNCHER_DIR/mirrors.properties or with -Dctlauncher.mirrors.<key>, as a
+    // comma-separated list per key (manifest, versions, libraries, assets). A mirror reproduces
+    // the upstream layout under its base URL; for the manifest, which is a single document, each
+    // entry is the full URL. The word "origin" places upstream in the list, otherwise it goes last.
+    // Everything but the manifest is content-addressed and hash-checked, so any source will do.
+    static final class Mirrors {
+        enum Resource {
+            MANIFEST("manifest", null, VERSION_MANIFEST_URL),
+            VERSIONS("versions", null, "https://piston-meta.mojang.com/", "https://launchermeta.mojang.com/",
+                     "https://piston-data.mojang.com/", "https://launcher.mojang.com/"),
+            LIBRARIES("libraries", "libraries/", "https://libraries.minecraft.net/"),
+            ASSETS("assets", "assets/objects/", RESOURCES_URL);
+            
+            final String key;
+            final String peerPath; // where Peers serves this type, null if it doesn't
+            final List<String> origins;
+            
+            Resource(String key, String peerPath, String... origins) {
+                this.key = key;
+                this.peerPath = peerPath;
+                this.origins = List.of(origins);
+            }
+        }
+        
+        // One place a resource can come from: url is already rewritten for that mirror
+        record Source(Mirror mirror, String url) {
+            void failure() {
+                if (mirror != null) mirror.failure();
+            }
+        }
+        
+        // Request outcomes for one mirror. Throughput and error rate are moving averages, so a
+        // mirror that slows down or starts failing loses its place within a few requests.
+        static final class Mirror {
+            private static final double ALPHA = 0.2;
+            
+            final Resource resource;
+            final String base; // null for upstream itself
+            private long successes;
+            private long failures;
+            private long bytes;
+            private double bytesPerSecond = -1; // -1 until the first success
+            private double errorRate;
+            
+            Mirror(Resource resource, String base) {
+                this.resource = resource;
+                this.base = base;
+            }
+            
+            String url(String origin, String rest) {
+                return base == null ? origin + rest : base + rest;
+            }
+            
+            synchronized void success(long fetched, long nanos) {
+                successes++;
+                errorRate -= ALPHA * errorRate;
+                if (fetched <= 0) return; // resumed from a complete .part; says nothing about speed
+                bytes += fetched;
+                double rate = fetched / Math.max(nanos / 1e9, 1e-6);
+                bytesPerSecond = bytesPerSecond < 0 ? rate : bytesPerSecond + ALPHA * (rate - bytesPerSecond);
+            }
+            
+            synchronized void failure() {
+                failures++;
+                errorRate += ALPHA * (1 - errorRate);
+            }
+            
+            // Unmeasured mirrors rank first so each gets tried; the rest by what they deliver
+            synchronized double score() {
+                return bytesPerSecond < 0 ? Double.MAX_VALUE : bytesPerSecond * (1 - errorRate);
+            }
+            
+            synchronized boolean used() {
+                return successes + failures > 0;
+            }
+            
+            synchronized String describe() {
+                return (base != null ? base : "origin") + " [" + resource.key + "]: " + successes + " ok, "
+                    + failures + " failed, " + formatBytes(bytes) + " at "
+                    + formatBytes((long) Math.max(bytesPerSecond, 0)) + "/s";
+            }
+        }
+        
+        // Roughly one request in this many goes to a runner-up, so the ranking notices a recovery
+        private static final int EXPLORE_ONE_IN = 32;
+        private static final Map<Resource, List<Mirror>> MIRRORS = configure();
+        private static final Map<String, Mirror> PEER_MIRRORS = new ConcurrentHashMap<>();
+        private static volatile boolean bypassed;
+        
+        private Mirrors() {}
+        
+        private static Map<Resource, List<Mirror>> configure() {
+            Properties config = new Properties();
+            Path file = Paths.get(LAUNCHER_DIR, "mirrors.properties");
+            if (Files.isRegularFile(file)) {
+                try (Reader in = Files.newBufferedReader(file)) {
+                    config.load(in);
+                } catch (IOException e) {
+                    System.err.println("Ignoring " + file + ": " + e.getMessage());
+                }
+            }
+            
+            Map<Resource, List<Mirror>> mirrors = new EnumMap<>(Resource.class);
+            for (Resource resource : Resource.values()) {
+                String list = System.getProperty("ctlauncher.mirrors." + resource.key,
+                                                 config.getProperty(resource.key, ""));
+                List<Mirror> sources = new ArrayList<>();
+                boolean origin = false;
+                for (String entry : list.split(",")) {
+                    entry = entry.trim();
+                    if (entry.isEmpty()) continue;
+                    if (entry.equals("origin")) {
+                        if (!origin) sources.add(new Mirror(resource, null));
+                        origin = true;
+                    } else {
+                        sources.add(new Mirror(resource, resource == Resource.MANIFEST ? entry : withTrailingSlash(entry)));
+                    }
+                }
+                if (!origin) sources.add(new Mirror(resource, null));
+                mirrors.put(resource, List.copyOf(sources));
+            }
+            return mirrors;
+        }
+        
+        // Where url can be fetched from, best first: LAN peers, then mirrors, each ranked by
+        // score, and anything whose host has an open circuit breaker last. URLs outside the known
+        // upstreams have just themselves.
+        static List<Source> sources(String url) {
+            if (bypassed) return List.of(new Source(null, url));
+            for (Resource resource : Resource.values()) {
+                for (String origin : resource.origins) {
+                    if (!url.startsWith(origin)) continue;
+                    String rest = url.substring(origin.length());
+                    List<Mirror> mirrors = MIRRORS.get(resource);
+                    List<String> peers = resource.peerPath != null ? Peers.current() : List.of();
+                    if (mirrors.size() == 1 && peers.isEmpty()) return List.of(new Source(mirrors.get(0), url));
+                    
+                    List<Source> fromPeers = new ArrayList<>(peers.size());
+                    for (String peer : peers) {
+                        Mirror mirror = PEER_MIRRORS.computeIfAbsent(peer + resource.peerPath,
+                                                                     base -> new Mirror(resource, base));
+                        fromPeers.add(new Source(mirror, mirror.url(origin, rest)));
+                    }
+                    List<Source> fromMirrors = new ArrayList<>(mirrors.size());
+                    for (Mirror mirror : mirrors) fromMirrors.add(new Source(mirror, mirror.url(origin, rest)));
+                    
+                    List<Source> ranked = new ArrayList<>(fromPeers.size() + fromMirrors.size());
+                    List<Source> open = new ArrayList<>();
+                    rank(fromPeers, ranked, open);
+                    rank(fromMirrors, ranked, open);
+                    ranked.addAll(open);
+                    return ranked;
+                }
+            }
+            return List.of(new Source(null, url));
+        }
+        
+        // Appends the healthy sources to ranked, best first, and the ones whose host is open to open
+        private static void rank(List<Source> sources, List<Source> ranked, List<Source> open) {
+            Map<Source, Double> scores = new HashMap<>();
+            List<Source> healthy = new ArrayList<>(sources.size());
+            for (Source source : sources) {
+                if (CircuitBreaker.forUrl(source.url()).isOpen()) {
+                    open.add(source);
+                } else {
+                    healthy.add(source);
+                    scores.put(source, source.mirror().score());
+                }
+            }
+            healthy.sort(Comparator.comparingDouble(scores::get).reversed());
+            if (healthy.size() > 1 && ThreadLocalRandom.current().nextInt(EXPLORE_ONE_IN) == 0) {
+                Collections.swap(healthy, 0, 1 + ThreadLocalRandom.current().nextInt(healthy.size() - 1));
+            }
+            ranked.addAll(healthy);
+        }
+        
+        // Everything from upstream only, for a process that is itself a mirror (CacheProxy)
+        static void bypass() {
+            bypassed = true;
+        }
+        
+        // Another source for url than the one a first attempt would use, if there is one
+        static String alternate(String url) {
+            List<Source> sources = sources(url);
+            return sources.get(sources.size() > 1 ? 1 : 0).url();
+        }
+        
+        // Credits a completed transfer to whichever mirror url belongs to
+        static void record(String url, long bytes, long nanos) {
+            for (Mirror mirror : PEER_MIRRORS.values()) {
+                if (url.startsWith(mirror.base)) {
+                    mirror.success(bytes, nanos);
+                    return;
+                }
+            }
+            for (List<Mirror> mirrors : MIRRORS.values()) {
+                for (Mirror mirror : mirrors) {
+                    if (mirror.base != null && url.startsWith(mirror.base)) {
+                        mirror.success(bytes, nanos);
+                        return;
+                    }
+                }
+            }
+            for (Resource resource : Resource.values()) {
+                for (String origin : resource.origins) {
+                    if (url.startsWith(origin)) {
+                        for (Mirror mirror : MIRRORS.get(resource)) {
+                            if (mirror.base == null) mirror.success(bytes, nanos);
+                        }
+                        return;
+                    }
+                }
+            }
+        }
+        
+        static boolean configured() {
+            return MIRRORS.values().stream().anyMatch(mirrors -> mirrors.size() > 1);
+        }
+        
+        static void printStats() {
+            if (!configured() && PEER_MIRRORS.isEmpty()) return;
+            for (Mirror mirror : PEER_MIRRORS.values()) {
+                if (mirror.used()) System.out.println("Peer " + mirror.describe());
+            }
+            for (List<Mirror> mirrors : MIRRORS.values()) {
+                for (Mirror mirror : mirrors) {
+                    if (mirror.used()) System.out.println("Mirror " + mirror.describe());
+                }
+            }
+        }
+    }
+    
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // PEER SHARING - asset objects and library jars served to other launchers on the LAN
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // -Dctlauncher.share=<port> serves this install's assets/objects and libraries over plain HTTP
+    // (--serve does only that, without the GUI). Launchers list peers in
+    // -Dctlauncher.peers=host:port,... or, with -Dctlauncher.discover=true, pick up multicast
+    // announcements from sharing instances, and try them before any mirror or upstream. What a
+    // peer sends is SHA-1 checked like everything else, so a peer can be slow but never wrong.
+    // There is no authentication, so the server listens only on the site-local interface that
+    // discovery uses (-Dctlauncher.shareAddress=<ip> to choose) and answers a bounded number of
+    // connections, a few per host.
+    static final class Peers {
+        static final int DEFAULT_PORT = 25590;
+        private static final InetSocketAddress GROUP = new InetSocketAddress("239.255.67.84", 25591);
+        private static final long ANNOUNCE_MILLIS = 5000;
+        private static final long PEER_TTL_MILLIS = 30000;
+        private static final String INSTANCE = UUID.randomUUID().toString();
+        private static final boolean DISCOVER = Boolean.getBoolean("ctlauncher.discover");
+        
+        // Base URLs ("http://host:port/"); discovered ones expire unless re-announced
+        private static final Set<String> AUTHORITIES = ConcurrentHashMap.newKeySet();
+        private static final List<String> CONFIGURED = configured();
+        private static final Map<String, Long> DISCOVERED = new ConcurrentHashMap<>();
+        
+        static final LongAdder SERVED = new LongAdder();
+        static final LongAdder SERVED_BYTES = new LongAdder();
+        
+        // Every connection holds a thread for as long as it stays open (keep-alive included)
+        private static final int MAX_CONNECTIONS = Integer.getInteger("ctlauncher.shareConnections", 32);
+        private static final int MAX_PER_HOST = Math.max(1, MAX_CONNECTIONS / 4);
+        // Open connections by host; a host's entry goes once its last connection closes
+        private static final Map<InetAddress, Integer> PER_HOST = new ConcurrentHashMap<>();
+        private static final ExecutorService SERVER_EXECUTOR = new ThreadPoolExecutor(
+            MAX_CONNECTIONS, MAX_CONNECTIONS, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(MAX_CONNECTIONS),
+            r -> {
+                Thread t = new Thread(r, "ctlauncher-share");
+                t.setDaemon(true);
+                return t;
+            });
+        
+        // The LAN interface discovery runs on and the server listens on; null when there is none
+        private static final NetworkInterface LAN = siteLocalInterface();
+        private static final InetAddress SHARE_ADDRESS = shareAddress();
+        
+        private Peers() {}
+        
+        private static List<String> configured() {
+            List<String> peers = new ArrayList<>();
+            for (String entry : System.getProperty("ctlauncher.peers", "").split(",")) {
+                entry = entry.trim();
+                if (entry.isEmpty()) continue;
+                String base = withTrailingSlash(entry.contains("://") ? entry : "http://" + entry);
+                peers.add(base);
+                AUTHORITIES.add(URI.create(base).getAuthority());
+            }
+            return List.copyOf(peers);
+        }
+        
+        // The first interface that is up, multicast-capable and has a site-local IPv4 address
+        private static NetworkInterface siteLocalInterface() {
+            try {
+                for (NetworkInterface iface : Collections.list(NetworkInterface.getNetworkInterfaces())) {
+                    if (!iface.isUp() || iface.isLoopback() || !iface.supportsMulticast()) continue;
+                    for (InetAddress address : Collections.list(iface.getInetAddresses())) {
+                        if (address instanceof Inet4Address && address.isSiteLocalAddress()) return iface;
+                    }
+                }
+            } catch (SocketException e) {
+                System.err.println("Could not list network interfaces: " + e.getMessage());
+            }
+            return null;
+        }
+        
+        // Loopback when the machine has no LAN address: nothing gets shared beyond this host
+        private static InetAddress shareAddress() {
+            String configured = System.getProperty("ctlauncher.shareAddress");
+            if (configured != null) {
+                try {
+                    return InetAddress.getByName(configured);
+                } catch (UnknownHostException e) {
+                    System.err.println("Ignoring ctlauncher.shareAddress: " + e.getMessage());
+                }
+            }
+            if (LAN != null) {
+                for (InetAddress address : Collections.list(LAN.getInetAddresses())) {
+                    if (address instanceof Inet4Address && address.isSiteLocalAddress()) return address;
+                }
+            }
+            return InetAddress.getLoopbackAddress();
+        }
+        
+        // Starts whatever the system properties ask for; called once at startup
+        static void start() {
+            Integer port = Integer.getInteger("ctlauncher.share");
+            if (port != null) {
+                try {
+                    serve(port);
+                } catch (IOException e) {
+                    System.err.println("Not sharing with peers: " + e.getMessage());
+                }
+            }
+            if (DISCOVER) startDaemon("ctlauncher-discover", Peers::listen);
+        }
+        
+        static List<String> current() {
+            if (DISCOVERED.isEmpty()) return CONFIGURED;
+            long now = System.currentTimeMillis();
+            DISCOVERED.values().removeIf(seen -> now - seen > PEER_TTL_MILLIS);
+            List<String> peers = new ArrayList<>(CONFIGURED);
+            for (String base : DISCOVERED.keySet()) {
+                if (!peers.contains(base)) peers.add(base);
+            }
+            return peers;
+        }
+        
+        static boolean isPeer(URI uri) {
+            return !AUTHORITIES.isEmpty() && AUTHORITIES.contains(uri.getAuthority());
+        }
+        
+        // Maps a request target to the file that answers it, or null for 404. Header names are
+        // lower-cased.
+        interface Resolver {
+            Path resolve(String target, Map<String, String> headers) throws IOException;
+        }
+        
+        // Binds the share port and serves it on a background thread; returns the bound port
+        static int serve(int port) throws IOException {
+            int bound = bind(port, (target, headers) -> resolve(target), null);
+            // Nobody else could reach a loopback server, so there is nothing to announce
+            if (DISCOVER && !SHARE_ADDRESS.isLoopbackAddress()) startDaemon("ctlauncher-announce", () -> announce(bound));
+            System.out.println("Sharing assets and libraries with peers on " + SHARE_ADDRESS.getHostAddress() + ":" + bound);
+            return bound;
+        }
+        
+        static int bind(int port, Resolver resolver, Supplier<String> stats) throws IOException {
+            return bind(SHARE_ADDRESS, port, resolver, stats);
+        }
+        
+        // Accepts connections in the background. Requests are answered with the file resolver
+        // names, or for /stats (when stats is given) with the document it returns. A connection
+        // over the per-host or overall limit is closed straight away.
+        static int bind(InetAddress address, int port, Resolver resolver, Supplier<String> stats) throws IOException {
+            ServerSocketChannel server = ServerSocketChannel.open();
+            server.bind(new InetSocketAddress(address, port));
+            startDaemon("ctlauncher-share-accept", () -> {
+                while (server.isOpen()) {
+                    try {
+                        SocketChannel client = server.accept();
+                        // Local processes only compete for the pool; the per-host cap is for the LAN
+                        InetAddress host = ((InetSocketAddress) client.getRemoteAddress()).getAddress();
+                        if (PER_HOST.merge(host, 1, Integer::sum) > MAX_PER_HOST && !host.isLoopbackAddress()) {
+                            closed(host);
+                            client.close();
+                            continue;
+                        }
+                        try {
+                            SERVER_EXECUTOR.execute(() -> {
+                                try {
+                                    handle(client, resolver, stats);
+                                } finally {
+                                    closed(host);
+                                }
+                            });
+                        } catch (RejectedExecutionException busy) {
+                            closed(host);
+                            client.close();
+                        }
+                    } catch (IOException e) {
+                        if (!server.isOpen()) return;
+                    }
+                }
+            });
+            return ((InetSocketAddress) server.getLocalAddress()).getPort();
+        }
+        
+        private static void closed(InetAddress host) {
+            PER_HOST.computeIfPresent(host, (h, open) -> open > 1 ? open - 1 : null);
+        }
+        
+        static int openConnections(InetAddress host) {
+            return PER_HOST.getOrDefault(host, 0);
+        }
+        
+        private static void startDaemon(String name, Runnable body) {
+            Thread t = new Thread(body, name);
+            t.setDaemon(true);
+            t.start();
+        }
+        
+        // The server: GET and HEAD with keep-alive and single byte ranges. File bodies go out
+        // with transferTo, so the bytes never pass through the Java heap.
+        private static void handle(SocketChannel client, Resolver resolver, Supplier<String> stats) {
+            try (SocketChannel socket = client) {
+                socket.socket().setTcpNoDelay(true);
+                ByteBuffer in = ByteBuffer.allocate(8192);
+                String head;
+                while ((head = readHead(socket, in)) != null) {
+                    if (!respond(socket, head, resolver, stats)) return;
+                }
+            } catch (IOException e) {
+                // Peer went away mid-request; nothing to clean up
+            }
+        }
+        
+        // Reads up to the blank line ending the request headers; bytes past it stay in `in`
+        private static String readHead(SocketChannel socket, ByteBuffer in) throws IOException {
+            while (true) {
+                for (int i = 3; i < in.position(); i++) {
+                    if (in.get(i - 3) == '\r' && in.get(i - 2) == '\n' && in.get(i - 1) == '\r' && in.get(i) == '\n') {
+                        String head = new String(in.array(), 0, i + 1, StandardCharsets.ISO_8859_1);
+                        in.flip().position(i + 1);
+                        in.compact();
+                        return head;
+                    }
+                }
+                if (!in.hasRemaining()) throw new IOException("Request headers too large");
+                if (socket.read(in) == -1) return null;
+            }
+        }
+        
+        // Answers one request; false when the connection should close
+        private static boolean respond(SocketChannel socket, String head, Resolver resolver, Supplier<String> stats)
+                throws IOException {
+            String[] lines = head.split("\r\n");
+            String[] request = lines[0].split(" ");
+            boolean keepAlive = request.length > 2 && request[2].equals("HTTP/1.1");
+            Map<String, String> headers = new HashMap<>();
+            for (int i = 1; i < lines.length; i++) {
+                int colon = lines[i].indexOf(':');
+                if (colon < 0) continue;
+                headers.put(lines[i].substring(0, colon).trim().toLowerCase(Locale.ROOT),
+                            lines[i].substring(colon + 1).trim());
+            }
+            String range = headers.get("range");
+            String connection = headers.get("connection");
+            if (connection != null) keepAlive = !connection.equalsIgnoreCase("close");
+            
+            boolean headOnly = request[0].equals("HEAD");
+            if (request.length < 2 || (!headOnly && !request[0].equals("GET"))) {
+                writeHead(socket, "405 Method Not Allowed", 0, null, false);
+                return false;
+            }
+            if (stats != null && request[1].equals("/stats")) {
+                ByteBuffer body = ByteBuffer.wrap(stats.get().getBytes(StandardCharsets.UTF_8));
+                writeHead(socket, "200 OK", body.remaining(), null, keepAlive, "application/json");
+                while (!headOnly && body.hasRemaining()) socket.write(body);
+                return keepAlive;
+            }
+            Path file;
+            try {
+                file = resolver.resolve(request[1], headers);
+            } catch (Http.HttpStatusException e) {
+                file = null;
+                if (e.status != 404) {
+                    writeHead(socket, "502 Bad Gateway", 0, null, keepAlive);
+                    return keepAlive;
+                }
+            } catch (IOException e) {
+                writeHead(socket, "502 Bad Gateway", 0, null, keepAlive);
+                return keepAlive;
+            }
+            if (file == null) {
+                writeHead(socket, "404 Not Found", 0, null, keepAlive);
+                return keepAlive;
+            }
+            
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long size = channel.size();
+                long start = 0;
+                long end = size - 1;
+                String status = "200 OK";
+                String contentRange = null;
+                if (range != null && range.startsWith("bytes=") && !range.contains(",")) {
+                    String[] bounds = range.substring(6).split("-", -1);
+                    try {
+                        if (bounds.length != 2) {
+                            start = size;
+                        } else if (bounds[0].isBlank()) {
+                            // bytes=-N is the last N bytes
+                            long suffix = Long.parseLong(bounds[1].trim());
+                            start = suffix > 0 ? Math.max(0, size - suffix) : size;
+                        } else {
+                            start = Long.parseLong(bounds[0].trim());
+                            if (!bounds[1].isBlank()) end = Math.min(end, Long.parseLong(bounds[1].trim()));
+                        }
+                    } catch (NumberFormatException e) {
+                        start = size; // unparseable, answered as unsatisfiable
+                    }
+                    if (start >= size || start > end) {
+                        writeHead(socket, "416 Range Not Satisfiable", 0, "bytes */" + size, keepAlive);
+                        return keepAlive;
+                    }
+                    status = "206 Partial Content";
+                    contentRange = "bytes " + start + "-" + end + "/" + size;
+                }
+                long length = end + 1 - start;
+                writeHead(socket, status, length, contentRange, keepAlive);
+                if (!headOnly) {
+                    for (long sent = 0; sent < length; ) {
+                        sent += channel.transferTo(start + sent, length - sent, socket);
+                    }
+                    SERVED.increment();
+                    SERVED_BYTES.add(length);
+                }
+            } catch (NoSuchFileException e) {
+                writeHead(socket, "404 Not Found", 0, null, keepAlive);
+            }
+            return keepAlive;
+        }
+        
+        private static void writeHead(SocketChannel socket, String status, long length, String contentRange,
+                                      boolean keepAlive) throws IOException {
+            writeHead(socket, status, length, contentRange, keepAlive, "application/octet-stream");
+        }
+        
+        private static void writeHead(SocketChannel socket, String status, long length, String contentRange,
+                                      boolean keepAlive, String contentType) throws IOException {
+            String head = "HTTP/1.1 " + status + "\r\n"
+                + "Content-Length: " + length + "\r\n"
+                + "Content-Type: " + contentType + "\r\n"
+                + "Accept-Ranges: bytes\r\n"
+                + (contentRange != null ? "Content-Range: " + contentRange + "\r\n" : "")
+                + (keepAlive ? "" : "Connection: close\r\n")
+                + "\r\n";
+            ByteBuffer out = ByteBuffer.wrap(head.getBytes(StandardCharsets.ISO_8859_1));
+            while (out.hasRemaining()) socket.write(out);
+        }
+        
+        // Maps a request path onto the shared directories. Only finished files are served:
+        // nothing outside them, and none of the temp files downloads write into.
+        static Path resolve(String target) {
+            return resolve(target, Paths.get(ASSETS_DIR, "objects"), Paths.get(LIBRARIES_DIR));
+        }
+        
+        static Path resolve(String target, Path objects, Path libraries) {
+            String path;
+            try {
+                path = new URI(target).getPath();
+            } catch (URISyntaxException e) {
+                return null;
+            }
+            if (path == null) return null;
+            Path root;
+            String rest;
+            if (path.startsWith("/assets/objects/")) {
+                root = objects;
+                rest = path.substring("/assets/objects/".length());
+            } else if (path.startsWith("/libraries/")) {
+                root = libraries;
+                rest = path.substring("/libraries/".length());
+            } else {
+                return null;
+            }
+            Path file = root.resolve(rest).normalize();
+            if (!file.startsWith(root) || isTemporary(file) || !Files.isRegularFile(file)) return null;
+            return file;
+        }
+        
+        // The files downloads write into before a verified result is moved into place
+        static boolean isTemporary(Path file) {
+            String name = file.getFileName() != null ? file.getFileName().toString() : "";
+            return name.endsWith(".part") || name.endsWith(".hedge") || name.endsWith(".seg") || name.endsWith(".tmp");
+        }
+        
+        // Discovery: sharing instances send "CTLAUNCHER <instance> <port>" to a multicast group
+        private static void announce(int port) {
+            byte[] message = announcement(INSTANCE, port);
+            try (MulticastSocket socket = new MulticastSocket()) {
+                if (LAN != null) socket.setNetworkInterface(LAN);
+                DatagramPacket packet = new DatagramPacket(message, message.length, GROUP);
+                while (true) {
+                    socket.send(packet);
+                    Thread.sleep(ANNOUNCE_MILLIS);
+                }
+            } catch (IOException e) {
+                System.err.println("Peer announcements stopped: " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        
+        private static void listen() {
+            try (MulticastSocket socket = new MulticastSocket(GROUP.getPort())) {
+                socket.joinGroup(GROUP, LAN);
+                byte[] buffer = new byte[256];
+                DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                while (true) {
+                    socket.receive(packet);
+                    discovered(packet);
+                }
+            } catch (IOException e) {
+                System.err.println("Peer discovery stopped: " + e.getMessage());
+            }
+        }
+        
+        static byte[] announcement(String instance, int port) {
+            return ("CTLAUNCHER " + instance + " " + port).getBytes(StandardCharsets.US_ASCII);
+        }
+        
+        // Records the sender of another instance's announcement as a peer; false for anything else
+        static boolean discovered(DatagramPacket packet) {
+            String[] parts = new String(packet.getData(), packet.getOffset(), packet.getLength(), StandardCharsets.US_ASCII)
+                .split(" ");
+            if (parts.length != 3 || !parts[0].equals("CTLAUNCHER") || parts[1].equals(INSTANCE)
+                    || !parts[2].matches("\\d{1,5}")) {
+                return false;
+            }
+            InetAddress address = packet.getAddress();
+            String host = address instanceof Inet6Address ? "[" + address.getHostAddress() + "]" : address.getHostAddress();
+            String authority = host + ":" + parts[2];
+            AUTHORITIES.add(authority);
+            if (DISCOVERED.put("http://" + authority + "/", System.currentTimeMillis()) == null) {
+                System.out.println("Found peer launcher at " + authority);
+            }
+            return true;
+        }
+    }
+    
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // CACHING PROXY - java CatsCTLauncher --proxy [port], a site-local cache for launchers
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // Serves the peer layout plus /versions/ and /manifest from ~/.ctlauncher, fetching whatever
+    // it doesn't have from upstream on the way through. Launchers use it as their mirror:
+    //   manifest=http://proxy:25590/manifest        versions=http://proxy:25590/versions/
+    //   libraries=http://proxy:25590/libraries/     assets=http://proxy:25590/assets/objects/
+    // Concurrent misses for one file share a single upstream fetch; /stats reports the counters.
+    // Everything stored is checked against a SHA-1, from the path (assets, version files) or,
+    // for libraries, from the hash and size the launcher sends along. A library fetched for a
+    // client that sent none is kept apart under cache/proxy/libraries and never trusted by this
+    // host's own installs.
+    static final class CacheProxy {
+        // Where a proxied path is kept and which upstream URLs may have it, in order
+        record Route(Path file, List<String> upstreams) {
+            Route unverified() {
+                Path root = Paths.get(LIBRARIES_DIR);
+                if (!file.startsWith(root)) return this;
+                return new Route(Paths.get(CACHE_DIR, "proxy", "libraries").resolve(root.relativize(file)), upstreams);
+            }
+        }
+        
+        // The manifest changes upstream; a copy younger than this is served without asking
+        private static final long MANIFEST_TTL_MILLIS = 60000;
+        private static final Map<Path, CompletableFuture<Path>> INFLIGHT = new ConcurrentHashMap<>();
+        
+        static final LongAdder HITS = new LongAdder();
+        static final LongAdder MISSES = new LongAdder();
+        static final LongAdder COALESCED = new LongAdder();
+        static final LongAdder ERRORS = new LongAdder();
+        static final LongAdder FETCHED_BYTES = new LongAdder();
+        private static final long STARTED = System.nanoTime();
+        
+        private CacheProxy() {}
+        
+        static int start(int port) throws IOException {
+            // Straight to upstream: a mirror list pointing back at this proxy would loop
+            Mirrors.bypass();
+            int bound = Peers.bind(port, CacheProxy::resolve, CacheProxy::stats);
+            System.out.println("Caching manifest, versions, libraries and assets on "
+                + Peers.SHARE_ADDRESS.getHostAddress() + ":" + bound);
+            return bound;
+        }
+        
+        static Path resolve(String target, Map<String, String> headers) throws IOException {
+            String path;
+            try {
+                path = new URI(target).getPath();
+            } catch (URISyntaxException e) {
+                return null;
+            }
+            if (path == null) return null;
+            if (path.equals("/manifest")) return manifest();
+            
+            Route route = route(path);
+            if (route == null || Peers.isTemporary(route.file())) return null;
+            if (Files.isRegularFile(route.file())) {
+                HITS.increment();
+                return route.file();
+            }
+            String sha1 = expectedSha1(route, headers.get(Http.EXPECTED_SHA1.toLowerCase(Locale.ROOT)));
+            long size = expectedSize(headers.get(Http.EXPECTED_SIZE.toLowerCase(Locale.ROOT)));
+            Route stored = sha1 != null ? route : route.unverified();
+            if (stored != route && Files.isRegularFile(stored.file())) {
+                HITS.increment();
+                return stored.file();
+            }
+            return fetch(stored.file(), () -> download(stored, sha1, size));
+        }
+        
+        // A SHA-1 in the path wins over one sent along; null when there is neither
+        private static String expectedSha1(Route route, String sent) {
+            for (Path segment : route.file()) {
+                if (isSha1(segment.toString())) return segment.toString();
+            }
+            return sent != null && isSha1(sent) ? sent.toLowerCase(Locale.ROOT) : null;
+        }
+        
+        private static long expectedSize(String sent) {
+            try {
+                return sent != null ? Long.parseLong(sent) : -1;
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+        
+        static Route route(String path) {
+            Path root;
+            String rest;
+            List<String> upstreams = new ArrayList<>();
+            if (path.startsWith("/assets/objects/")) {
+                root = Paths.get(ASSETS_DIR, "objects");
+                rest = path.substring("/assets/objects/".length());
+                upstreams.add(RESOURCES_URL + rest);
+            } else if (path.startsWith("/libraries/")) {
+                root = Paths.get(LIBRARIES_DIR);
+                rest = path.substring("/libraries/".length());
+                for (String origin : Mirrors.Resource.LIBRARIES.origins) upstreams.add(origin + rest);
+            } else if (path.startsWith("/versions/")) {
+                // Version JSONs, asset indexes and client jars, spread over several upstream hosts
+                root = Paths.get(CACHE_DIR, "proxy", "versions");
+                rest = path.substring("/versions/".length());
+                for (String origin : Mirrors.Resource.VERSIONS.origins) upstreams.add(origin + rest);
+            } else {
+                return null;
+            }
+            Path file = root.resolve(rest).normalize();
+            return file.startsWith(root) && !file.equals(root) ? new Route(file, upstreams) : null;
+        }
+        
+        // The first request for a missing file fetches it; any that arrive meanwhile wait for that
+        // fetch instead of starting their own
+        private static Path fetch(Path file, Callable<Path> download) throws IOException {
+            CompletableFuture<Path> mine = new CompletableFuture<>();
+            CompletableFuture<Path> inflight = INFLIGHT.putIfAbsent(file, mine);
+            if (inflight != null) {
+                COALESCED.increment();
+                return await(inflight);
+            }
+            MISSES.increment();
+            try {
+                mine.complete(download.call());
+            } catch (Exception e) {
+                ERRORS.increment();
+                mine.completeExceptionally(e);
+            } finally {
+                INFLIGHT.remove(file, mine);
+            }
+            return await(mine);
+        }
+        
+        private static Path await(CompletableFuture<Path> future) throws IOException {
+            try {
+                return future.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+                throw new IOException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for upstream");
+            }
+        }
+        
+        // Tries each upstream in turn past 404s, verifying against sha1 and size like any download
+        private static Path download(Route route, String sha1, long size) throws Exception {
+            if (Files.isRegularFile(route.file())) return route.file(); // a fetch finished just before ours
+            Http.HttpStatusException missing = null;
+            for (String upstream : route.upstreams()) {
+                try {
+                    FETCHED_BYTES.add(downloadFile(upstream, route.file().toString(), sha1, size));
+                    return route.file();
+                } catch (Http.HttpStatusException e) {
+                    if (e.status != 404) throw e;
+                    missing = e;
+                }
+            }
+            throw missing;
+        }
+        
+        private static boolean isSha1(String name) {
+            if (name.length() != 40) return false;
+            for (int i = 0; i < 40; i++) {
+                if (Character.digit(name.charAt(i), 16) < 0) return false;
+            }
+            return true;
+        }
+        
+        // Revalidated at most once per TTL; a 304 keeps the cached copy and restarts its TTL
+        private static Path manifest() throws IOException {
+            Path file = Paths.get(CACHE_DIR, "proxy", "version_manifest.json");
+            if (Files.isRegularFile(file)
+                    && System.currentTimeMillis() - Files.getLastModifiedTime(file).toMillis() < MANIFEST_TTL_MILLIS) {
+                HITS.increment();
+                return file;
+            }
+            return fetch(file, () -> {
+                MetadataCache.Result result = MetadataCache.fetch(VERSION_MANIFEST_URL, file);
+                if (result.changed()) {
+                    FETCHED_BYTES.add(result.body().length);
+                } else {
+                    Files.setLastModifiedTime(file, java.nio.file.attribute.FileTime.fromMillis(System.currentTimeMillis()));
+                }
+                return file;
+            });
+        }
+        
+        // A request that waited on another's fetch didn't cost an upstream round trip either, so
+        // it counts toward the hit ratio
+        static String stats() {
+            long hits = HITS.sum();
+            long misses = MISSES.sum();
+            long coalesced = COALESCED.sum();
+            long requests = hits + misses + coalesced;
+            double seconds = Math.max((System.nanoTime() - STARTED) / 1e9, 0.001);
+            return String.format(Locale.ROOT,
+                "{\"hits\":%d,\"misses\":%d,\"coalesced\":%d,\"errors\":%d,\"hitRatio\":%.4f,"
+                    + "\"servedFiles\":%d,\"servedBytes\":%d,\"fetchedBytes\":%d,\"uptimeSeconds\":%.0f,"
+                    + "\"servedBytesPerSecond\":%.0f,\"fetchedBytesPerSecond\":%.0f}",
+                hits, misses, coalesced, ERRORS.sum(), requests == 0 ? 0.0 : (double) (hits + coalesced) / requests,
+                Peers.SERVED.sum(), Peers.SERVED_BYTES.sum(), FETCHED_BYTES.sum(), seconds,
+                Peers.SERVED_BYTES.sum() / seconds, FETCHED_BYTES.sum() / seconds);
+        }
+    }
+    
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // HEADLESS - java CatsCTLauncher --install 1.20.1,1.8.9 --no-gui, for provisioning images
+    // ═══════════════════════════════════════════════════════════════════════════════
+    //   --install <versions>   install every listed version in one deduplicated pass
+    //   --verify <versions>    hash every file of the versions and report what is missing or
+    //                          corrupt; together with --install, repairs it as well
+    //   --launch <version>     install if needed, then start the game [--username N] [--ram GB]
+    // No frame, toolkit or event thread is created. stdout carries one JSON object per line;
+    // the launcher's own log goes to stderr and the game's to logs/<version>.log.
+    static final class Headless {
+        private static final Set<String> MODES = Set.of("--install", "--verify", "--launch");
+        
+        private final PrintStream events;
+        private List<Object> lastReported;
+        
+        private Headless(PrintStream events) {
+            this.events = events;
+        }
+        
+        static boolean wants(String[] args) {
+            for (String arg : args) {
+                if (MODES.contains(arg) || arg.equals("--no-gui")) return true;
+            }
+            return false;
+        }
+        
+        static int run(String[] args) {
+            Headless out = new Headless(System.out);
+            System.setOut(System.err);
+            System.setProperty("java.awt.headless", "true");
+            
+            // An option without a value (--verify next to --install) is a plain flag
+            Map<String, String> options = new HashMap<>();
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("--no-gui")) continue;
+                if (!args[i].startsWith("--")) return out.usage("Unexpected argument: " + args[i]);
+                boolean flag = i + 1 >= args.length || args[i + 1].startsWith("--");
+                options.put(args[i], flag ? "" : args[++i]);
+            }
+            String versions = "";
+            for (String mode : List.of("--launch", "--install", "--verify")) {
+                if (versions.isEmpty()) versions = options.getOrDefault(mode, "");
+            }
+            if (versions.isEmpty()) return out.usage("No versions given");
+            
+            try {
+                Peers.start();
+                VersionCatalog catalog = VersionCatalog.parse(JsonReader.of(
+                    MetadataCache.fetchOrCached(VERSION_MANIFEST_URL, Paths.get(CACHE_DIR, "version_manifest.json"))));
+                Map<String, String> urls = new LinkedHashMap<>();
+                for (String version : versions.split(",")) {
+                    version = version.trim();
+                    if (version.isEmpty()) continue;
+                    String url = catalog.urls().get(version);
+                    if (url == null) return out.usage("Unknown version: " + version);
+                    urls.put(version, url);
+                }
+                if (options.containsKey("--launch") && urls.size() != 1) {
+                    return out.usage("--launch takes exactly one version");
+                }
+                
+                if (options.containsKey("--verify")) {
+                    fullVerify = true;
+                    if (!options.containsKey("--install") && !options.containsKey("--launch")) {
+                        return out.verify(urls);
+                    }
+                }
+                
+                Map<String, LaunchPlan> plans = out.install(urls);
+                for (LaunchPlan plan : plans.values()) {
+                    out.emit("installed", "version", plan.version(), "mainClass", plan.mainClass(),
+                             "classpath", plan.classpath().size());
+                }
+                if (!options.containsKey("--launch")) return 0;
+                
+                String version = urls.keySet().iterator().next();
+                Path log = Paths.get(LAUNCHER_DIR, "logs", version + ".log");
+                Files.createDirectories(log.getParent());
+                Process game = Installer.launch(version, validateUsername(options.getOrDefault("--username", "Player")),
+                    Integer.parseInt(options.getOrDefault("--ram", "4")), plans.get(version),
+                    ProcessBuilder.Redirect.appendTo(log.toFile()));
+                out.emit("launched", "version", version, "pid", game.pid(), "log", log.toString());
+                int exitCode = game.waitFor();
+                out.emit("exited", "version", version, "code", exitCode);
+                return exitCode;
+            } catch (Exception e) {
+                e.printStackTrace();
+                out.emit("error", "message", String.valueOf(e.getMessage()));
+                return 1;
+            }
+        }
+        
+        // Shared files are hashed once however many of the versions list them. Each file that is
+        // missing or doesn't match gets a "bad" line saying what was expected and what was found.
+        private int verify(Map<String, String> urls) throws Exception {
+            List<VersionProfile> profiles = new ArrayList<>();
+            for (Map.Entry<String, String> entry : urls.entrySet()) {
+                String version = entry.getKey();
+                profiles.add(VersionProfile.parse(JsonReader.decode(MetadataCache.fetchOrCached(
+                    entry.getValue(), Paths.get(VERSIONS_DIR, version, version + ".json")))));
+            }
+            InstallEstimate estimate = estimateInstall(profiles, true, (kind, path, sha1, size) -> {
+                if (isInstalled(path, sha1, size)) return true;
+                Path file = Paths.get(path);
+                if (!Files.isRegularFile(file)) {
+                    emit("bad", "kind", kind, "path", path, "problem", "missing",
+                         "expectedSize", size, "expectedSha1", String.valueOf(sha1));
+                } else {
+                    long actualSize = Files.size(file);
+                    emit("bad", "kind", kind, "path", path, "problem", size >= 0 && actualSize != size ? "size" : "hash",
+                         "expectedSize", size, "actualSize", actualSize,
+                         "expectedSha1", String.valueOf(sha1), "actualSha1", sha1Of(file));
+                }
+                return false;
+            });
+            emit("verified", "versions", String.join(",", urls.keySet()), "files", estimate.files(),
+                 "bytes", estimate.totalBytes(), "missingFiles", estimate.missingFiles(),
+                 "missingBytes", estimate.missingBytes());
+            return estimate.missingFiles() == 0 ? 0 : 1;
+        }
+        
+        // Samples the counters every PROGRESS_EVENT_MILLIS and prints a line when anything but the
+        // clock moved; phase changes are printed as they happen
+        private Map<String, LaunchPlan> install(Map<String, String> urls) throws Exception {
+            Installer installer = new Installer();
+            installer.progress.addListener((phase, detail) ->
+                emit("phase", "phase", phase.name().toLowerCase(Locale.ROOT), "detail", detail));
+            ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "ctlauncher-progress");
+                t.setDaemon(true);
+                return t;
+            });
+            sampler.scheduleAtFixedRate(() -> report(installer.progress.snapshot()),
+                PROGRESS_EVENT_MILLIS, PROGRESS_EVENT_MILLIS, TimeUnit.MILLISECONDS);
+            try {
+                return installer.prepare(urls);
+            } finally {
+                sampler.shutdownNow();
+                report(installer.progress.snapshot());
+            }
+        }
+        
+        private synchronized void report(InstallProgress.Snapshot progress) {
+            List<Object> key = List.of(progress.phase(), progress.filesDone(), progress.filesTotal(),
+                                       progress.failed(), progress.bytesDone());
+            if (key.equals(lastReported)) return;
+            lastReported = key;
+            emit("progress", "phase", progress.phase().name().toLowerCase(Locale.ROOT), "kind", progress.kind(),
+                 "percent", progress.percent(), "filesDone", progress.filesDone(),
+                 "filesTotal", progress.filesTotal(), "failed", progress.failed(),
+                 "bytesDone", progress.bytesDone(), "bytesTotal", progress.bytesTotal(),
+                 "bytesPerSecond", (long) progress.rate(), "etaSeconds", progress.eta());
+        }
+        
+        private int usage(String problem) {
+            emit("error", "message", problem);
+            System.err.println("Usage: java CatsCTLauncher --install <version,...> [--verify] [--no-gui]");
+            System.err.println("       java CatsCTLauncher --verify <version,...>");
+            System.err.println("       java CatsCTLauncher --launch <version> [--username <name>] [--ram <GB>]");
+            return 2;
+        }
+        
+        // Name/value pairs; numbers are written bare and everything else as a JSON string
+        private void emit(String event, Object... fields) {
+            StringBuilder line = new StringBuilder("{\"event\":\"").append(event).append('"');
+            for (int i = 0; i < fields.length; i += 2) {
+                line.append(",\"").append(fields[i]).append("\":");
+                Object value = fields[i + 1];
+                if (value instanceof Number) {
+                    line.append(value);
+                } else {
+                    quote(line, String.valueOf(value));
+                }
+            }
+            line.append('}');
+            synchronized (events) {
+                events.println(line);
+                events.flush();
+            }
+        }
+        
+        private static void quote(StringBuilder out, String value) {
+            out.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"' -> out.append("\\\"");
+                    case '\\' -> out.append("\\\\");
+                    case '\n' -> out.append("\\n");
+                    case '\r' -> out.append("\\r");
+                    case '\t' -> out.append("\\t");
+                    default -> {
+                        if (c < 0x20) out.append(String.format("\\u%04x", (int) c));
+                        else out.append(c);
+                    }
+                }
+            }
+            out.append('"');
+        }
+    }
+    
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // RESILIENCE - retries with jittered backoff, per-host circuit breakers, hedging stats
+    // ═══════════════════════════════════════════════════════════════════════════════
+    static final class RetryPolicy {
+        static final int MAX_ATTEMPTS = Integer.getInteger("ctlauncher.retries", 5);
+        private static final long BASE_DELAY_MS = 250;
+        private static final long MAX_DELAY_MS = 8000;
+        
+        interface Attempt<T> {
+            T run(String url) throws Exception;
+        }
+        
+        private RetryPolicy() {}
+        
+        static <T> T run(String url, Attempt<T> attempt) throws Exception {
+            return run(url, () -> false, MAX_ATTEMPTS - 1, attempt);
+        }
+        
+        // As above, for attempts the caller may abandon: once cancelled reports true, failures are
+        // the caller's doing and are neither retried nor held against the host
+        static <T> T run(String url, BooleanSupplier cancelled, Attempt<T> attempt) throws Exception {
+            return run(url, cancelled, MAX_ATTEMPTS - 1, attempt);
+        }
+        
+        // One try per mirror and no waiting, for callers that have a fallback of their own
+        static <T> T tryEachMirror(String url, Attempt<T> attempt) throws Exception {
+            return run(url, () -> false, 0, attempt);
+        }
+        
+        // Each mirror of url gets one attempt, best first, plus `retries` more across them. A
+        // failure moves straight on to the next mirror; only coming back round to one that already
+        // failed sleeps first, a random delay up to an exponentially growing cap (full jitter), so
+        // clients that failed together don't retry together. A mirror whose failure retrying can't
+        // fix (say a 404: it may just be behind) is skipped from then on, and once every mirror
+        // has refused like that there is nothing left to try. When every host's breaker is open,
+        // the one that lets a probe through soonest is tried next if that is within MAX_DELAY_MS.
+        private static <T> T run(String url, BooleanSupplier cancelled, int retries, Attempt<T> attempt)
+                throws Exception {
+            List<Mirrors.Source> sources = Mirrors.sources(url);
+            boolean[] refused = new boolean[sources.size()];
+            int limit = sources.size() + retries;
+            int open = 0;
+            int soonest = -1;
+            long soonestMillis = Long.MAX_VALUE;
+            int rounds = 0;
+            int i = 0;
+            for (int n = 1; ; n++) {
+                Mirrors.Source source = sources.get(i);
+                CircuitBreaker breaker = CircuitBreaker.forUrl(source.url());
+                long wait;
+                try {
+                    breaker.before();
+                    open = 0;
+                    T result = attempt.run(source.url());
+                    breaker.success();
+                    return result;
+                } catch (CircuitBreaker.OpenException e) {
+                    // That host is down; waiting on it would only stall the queue behind us
+                    if (e.retryInMillis < soonestMillis) {
+                        soonest = i;
+                        soonestMillis = e.retryInMillis;
+                    }
+                    int next = nextSource(i, refused);
+                    if (n >= limit || next < 0) throw e;
+                    if (++open < sources.size()) {
+                        i = next;
+                        continue;
+                    }
+                    // So is every other one; a probe already under way is given a backoff to finish
+                    if (soonestMillis > MAX_DELAY_MS) throw e;
+                    wait = Math.max(soonestMillis, backoff(++rounds));
+                    i = soonest;
+                    open = 0;
+                    soonest = -1;
+                    soonestMillis = Long.MAX_VALUE;
+                } catch (Exception e) {
+                    if (cancelled.getAsBoolean() || Thread.currentThread().isInterrupted()) {
+                        breaker.abandon();
+                        throw e;
+                    }
+                    boolean retryable = isRetryable(e);
+                    if (retryable) {
+                        breaker.failure();
+                        source.failure();
+                    } else {
+                        breaker.success(); // the host answered; the request itself was bad
+                        refused[i] = true;
+                    }
+                    int next = nextSource(i, refused);
+                    if (n >= limit || next < 0) throw e;
+                    wait = next <= i ? backoff(++rounds) : 0;
+                    i = next;
+                }
+                if (wait == 0) continue;
+                try {
+                    Thread.sleep(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while retrying " + url);
+                }
+            }
+        }
+        
+        // The next source after i that hasn't refused, wrapping round (possibly to i itself); -1 if none
+        private static int nextSource(int i, boolean[] refused) {
+            for (int k = 1; k <= refused.length; k++) {
+                int j = (i + k) % refused.length;
+                if (!refused[j]) return j;
+            }
+            return -1;
+        }
+        
+        static long backoff(int attempt) {
+            long cap = Math.min(MAX_DELAY_MS, BASE_DELAY_MS << Math.min(attempt - 1, 16));
+            return ThreadLocalRandom.current().nextLong(cap + 1);
+        }
+        
+        // Server trouble, throttling, timeouts, dropped connections and corrupted transfers are
+        // worth another try; a 404 or a cancelled download is not
+        static boolean isRetryable(Throwable e) {
+            if (e instanceof Http.HttpStatusException) {
+                int status = ((Http.HttpStatusException) e).status;
+                return status == 408 || status == 429 || status >= 500;
+            }
+            if (e instanceof InterruptedIOException && !(e instanceof HttpTimeoutException)
+                    && !(e instanceof SocketTimeoutException)) {
+                return false;
+            }
+            if (e instanceof ClosedByInterruptException) return false;
+            return e instanceof IOException;
+        }
+    }
+    
+    // Closed until FAILURE_THRESHOLD consecutive transient failures against a host; then open
+    // (every call fails fast) for OPEN_MILLIS, after which a single probe is let through and its
+    // outcome closes or re-opens the breaker
+    static final class CircuitBreaker {
+        private static final int FAILURE_THRESHOLD = 8;
+        private static final long OPEN_MILLIS = 5000;
+        private static final Map<String, CircuitBreaker> BY_HOST = new ConcurrentHashMap<>();
+        
+        static final class OpenException extends IOException {
+            private static final long serialVersionUID = 1L;
+            
+            final long retryInMillis;
+            
+            OpenException(String host, long retryInMillis) {
+                super("Circuit open for " + host + " after repeated failures");
+                this.retryInMillis = retryInMillis;
+            }
+        }
+        
+        private final String host;
+        private final LongSupplier clock; // milliseconds
+        private int failures;
+        private long openUntil;
+        private boolean probing;
+        
+        CircuitBreaker(String host, LongSupplier clock) {
+            this.host = host;
+            this.clock = clock;
+        }
+        
+        static CircuitBreaker forUrl(String url) {
+            // host:port, so two mirrors on one machine fail independently
+            String host = URI.create(url).getAuthority();
+            return BY_HOST.computeIfAbsent(host != null ? host : "", h -> new CircuitBreaker(h, System::currentTimeMillis));
+        }
+        
+        synchronized void before() throws OpenException {
+            if (failures < FAILURE_THRESHOLD) return;
+            long now = clock.getAsLong();
+            if (now < openUntil) throw new OpenException(host, openUntil - now);
+            if (probing) throw new OpenException(host, 0);
+            probing = true;
+        }
+        
+        synchronized void success() {
+            failures = 0;
+            probing = false;
+        }
+        
+        synchronized void abandon() {
+            probing = false;
+        }
+        
+        synchronized boolean isOpen() {
+            return failures >= FAILURE_THRESHOLD && clock.getAsLong() < openUntil;
+        }
+        
+        synchronized void failure() {
+            failures++;
+            probing = false;
+            if (failures >= FAILURE_THRESHOLD) {
+                openUntil = clock.getAsLong() + OPEN_MILLIS;
+            }
+        }
+    }
+    
+    // Durations of recent successful small downloads, for the hedging delay
+    static final class LatencyTracker {
+        private static final int MIN_SAMPLES = 20;
+        private final long[] samples = new long[256];
+        private int count;
+        private int next;
+        
+        synchronized void record(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            if (count < samples.length) count++;
+        }
+        
+        // 0 until there are enough samples to trust
+        synchronized long p95Nanos() {
+            if (count < MIN_SAMPLES) return 0;
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            return sorted[(int) Math.ceil(count * 0.95) - 1];
+        }
+    }
+    
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // INSTALL LOCKS - one writer per file or version across threads and launcher processes
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // Every key hashes to a one-byte region of locks/<name>.lock, and the region is held with
+    // a FileChannel lock for as long as the download (or version install) runs; a second launcher
+    // on the same key waits and then finds the file in place. The OS drops the locks of a process
+    // that dies, however it dies, so there is nothing stale to clean up: the next holder simply
+    // resumes whatever .part file was left behind. Java refuses overlapping file locks within one
+    // process, so each region also has an in-process lock, and only its outermost holder takes
+    // the file lock.
+    static final class InstallLock {
+        private static final int REGIONS = 4096;
+        private static final long MAX_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+        
+        // Separate files, so holding a version never blocks a download that hashes alike
+        static final InstallLock FILES = new InstallLock("files");
+        static final InstallLock VERSIONS = new InstallLock("versions");
+        static final InstallLock INDEX = new InstallLock("index");
+        
+        record Lease(InstallLock owner, int region, boolean waited) implements AutoCloseable {
+            @Override
+            public void close() {
+                owner.release(region);
+            }
+        }
+        
+        private final Path file;
+        private final ReentrantLock[] local = new ReentrantLock[REGIONS];
+        private final FileLock[] held = new FileLock[REGIONS];
+        private final LongAdder contended = new LongAdder();
+        // Leases that, once granted, found the file already published by whoever held them
+        final LongAdder reused = new LongAdder();
+        private FileChannel channel;
+        
+        private InstallLock(String name) {
+            file = Paths.get(LAUNCHER_DIR, "locks", name + ".lock");
+            for (int i = 0; i < REGIONS; i++) local[i] = new ReentrantLock();
+        }
+        
+        Lease acquire(String key) throws IOException {
+            return acquire(region(key), key);
+        }
+        
+        // Keys hash to regions in no particular order, so several are taken by region number:
+        // two holders can then never each hold a region the other is waiting for
+        List<Lease> acquireAll(Collection<String> keys) throws IOException {
+            TreeMap<Integer, String> regions = new TreeMap<>();
+            for (String key : keys) regions.putIfAbsent(region(key), key);
+            List<Lease> leases = new ArrayList<>();
+            try {
+                for (Map.Entry<Integer, String> e : regions.entrySet()) leases.add(acquire(e.getKey(), e.getValue()));
+            } catch (IOException | RuntimeException e) {
+                for (int i = leases.size() - 1; i >= 0; i--) leases.get(i).close();
+                throw e;
+            }
+            return leases;
+        }
+        
+        private static int region(String key) {
+            return (key.hashCode() * 0x9E3779B9) >>> 20; // 12 well-mixed bits
+        }
+        
+        private Lease acquire(int region, String key) throws IOException {
+            ReentrantLock lock = local[region];
+            boolean waited = !lock.tryLock();
+            if (waited) {
+                try {
+                    lock.lockInterruptibly();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for " + key);
+                }
+            }
+            try {
+                if (lock.getHoldCount() == 1) waited |= lockRegion(region, key);
+            } catch (IOException | RuntimeException e) {
+                lock.unlock();
+                throw e;
+            }
+            return new Lease(this, region, waited);
+        }
+        
+        // Locks taken from other processes while a lease was waited for
+        long contended() {
+            return contended.sum();
+        }
+        
+        // Polls instead of blocking in FileChannel.lock: an interrupt (a cancelled hedge, say)
+        // during a blocking lock would close the channel under every other thread
+        private boolean lockRegion(int region, String key) throws IOException {
+            long pause = TimeUnit.MILLISECONDS.toNanos(1);
+            boolean waited = false;
+            while (true) {
+                FileLock lock = channel().tryLock(region, 1, false);
+                if (lock != null) {
+                    held[region] = lock;
+                    if (waited) contended.increment();
+                    return waited;
+                }
+                waited = true;
+                if (Thread.interrupted()) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for " + key);
+                }
+                LockSupport.parkNanos(pause);
+                pause = Math.min(pause * 2, MAX_POLL_NANOS);
+            }
+        }
+        
+        private void release(int region) {
+            ReentrantLock lock = local[region];
+            if (lock.getHoldCount() == 1) {
+                FileLock fileLock = held[region];
+                held[region] = null;
+                try {
+                    fileLock.release();
+                } catch (IOException e) {
+                    // The channel is gone, and its locks with it
+                }
+            }
+            lock.unlock();
+        }
+        
+        private synchronized FileChannel channel() throws IOException {
+            if (channel == null || !channel.isOpen()) {
+                Files.createDirectories(file.getParent());
+                channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            }
+            return channel;
+        }
+    }
+    
+    // Temp name for a file that is about to be replaced atomically, unique to this process so
+    // two launchers sharing the directory never write into each other's copy
+    static Path scratchFile(Path file, String suffix) {
+        return Paths.get(file + "." + ProcessHandle.current().pid() + suffix);
+    }
+    
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // INSTALL INDEX - append-only journal of verified files (path, sha1, size, mtime)
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // Launchers sharing the directory append to one journal. Every append, and the load that may
+    // cut off a torn tail or compact, holds the journal's InstallLock: a short tail is then a
+    // crashed writer rather than one still writing, and a compaction reads everything appended
+    // before it. A launcher whose journal was compacted under it reopens the new file on its next
+    // append.
+    static final class InstallIndex {
+        private static final int MAGIC = 0x43544958; // "CTIX"
+        private static final int VERSION = 1;
+        private static final String KEY_PREFIX = LAUNCHER_DIR.replace('\\', '/') + "/";
+        private static final String OBJECTS_PREFIX = key(ASSETS_DIR + "/objects/");
+        
+        record Entry(byte[] sha1, long size, long mtime) {}
+        
+        private final Path file;
+        private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+        // Asset objects indexed; only a forget() lowers it, which launch plans watch for
+        private final AtomicInteger assetObjects = new AtomicInteger();
+        // A stream rather than a FileChannel: channels close themselves when a writing thread is
+        // interrupted, and cancelled downloads must not take the journal down for everyone else
+        private FileOutputStream journal;
+        // The file the journal stream writes to; another launcher's compaction replaces it
+        private Object journalId;
+        
+        private InstallIndex(Path file) {
+            this.file = file;
+        }
+        
+        // Never fails: an unreadable index just starts empty and the disk is consulted instead
+        static InstallIndex open(Path file) {
+            InstallIndex index = new InstallIndex(file);
+            try {
+                Files.createDirectories(file.getParent());
+                InstallLock.Lease lease = InstallLock.INDEX.acquire(file.toString());
+                try {
+                    int records = index.load();
+                    if (records > index.entries.size() * 2 + 1024) {
+                        index.compact();
+                    }
+                    index.openJournal();
+                } finally {
+                    lease.close();
+                }
+            } catch (IOException e) {
+                System.err.println("Install index unavailable, falling back to disk checks: " + e.getMessage());
+            }
+            return index;
+        }
+        
+        boolean contains(String path, String sha1, long size) {
+            Entry entry = entries.get(key(path));
+            if (entry == null) return false;
+            if (size >= 0 && entry.size() != size) return false;
+            return sha1 == null || Arrays.equals(entry.sha1(), HexFormat.of().parseHex(sha1));
+        }
+        
+        void record(String path, String sha1, long size, long mtime) throws IOException {
+            String key = key(path);
+            Entry entry = new Entry(HexFormat.of().parseHex(sha1), size, mtime);
+            Entry previous = entries.put(key, entry);
+            if (previous == null && key.startsWith(OBJECTS_PREFIX)) assetObjects.incrementAndGet();
+            if (previous == null || previous.size() != size || previous.mtime() != mtime
+                    || !Arrays.equals(previous.sha1(), entry.sha1())) {
+                append(key, entry);
+            }
+        }
+        
+        void forget(String path) throws IOException {
+            String key = key(path);
+            if (entries.remove(key) != null) {
+                if (key.startsWith(OBJECTS_PREFIX)) assetObjects.decrementAndGet();
+                append(key, null);
+            }
+        }
+        
+        int assetObjects() {
+            return assetObjects.get();
+        }
+        
+        // Digest of the indexed state of the given files; files the index doesn't track (no
+        // known hash) fall back to a stat. Null when any of them is missing.
+        String fingerprint(Collection<String> paths) {
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-1");
+                ByteBuffer buf = ByteBuffer.allocate(16);
+                for (String path : paths) {
+                    String key = key(path);
+                    Entry entry = entries.get(key);
+                    digest.update(key.getBytes(StandardCharsets.UTF_8));
+                    if (entry != null) {
+                        digest.update(entry.sha1());
+                        buf.clear().putLong(entry.size()).putLong(entry.mtime());
+                    } else {
+                        File f = new File(path);
+                        if (!f.isFile()) return null;
+                        buf.clear().putLong(f.length()).putLong(f.lastModified());
+                    }
+                    digest.update(buf.array());
+                }
+                return HexFormat.of().formatHex(digest.digest());
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        
+        // Drops every entry whose file is gone or whose size or mtime no longer matches
+        int rescan() throws IOException {
+            int dropped = 0;
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                File f = new File(e.getKey()).isAbsolute() ? new File(e.getKey()) : new File(LAUNCHER_DIR, e.getKey());
+                Entry entry = e.getValue();
+                if (!f.isFile() || f.length() != entry.size() || f.lastModified() != entry.mtime()) {
+                    forget(f.getPath());
+                    dropped++;
+                }
+            }
+            return dropped;
+        }
+        
+        // Relative to LAUNCHER_DIR and always with '/': on Windows a Path's toString() uses '\'
+        // while the paths built from the *_DIR strings mix both, and they must meet on one key
+        private static String key(String path) {
+            String key = path.replace('\\', '/');
+            return key.startsWith(KEY_PREFIX) ? key.substring(KEY_PREFIX.length()) : key;
+        }
+        
+        private static ByteBuffer header() {
+            return ByteBuffer.allocate(8).putInt(MAGIC).putInt(VERSION).flip();
+        }
+        
+        // Each record is [length][body][crc32] and goes out in one append, so a crash can only
+        // leave a torn last record, which load() discards
+        private synchronized void append(String key, Entry entry) throws IOException {
+            if (journal == null) return;
+            ByteBuffer record = encode(key, entry);
+            // The file was verified, so a cancelled download still gets it recorded
+            boolean interrupted = Thread.interrupted();
+            try {
+                InstallLock.Lease lease = InstallLock.INDEX.acquire(file.toString());
+                try {
+                    if (!Objects.equals(journalId, identity(file))) {
+                        journal.close();
+                        openJournal();
+                    }
+                    journal.write(record.array(), 0, record.limit());
+                } finally {
+                    lease.close();
+                }
+            } finally {
+                if (interrupted) Thread.currentThread().interrupt();
+            }
+        }
+        
+        // Called with the journal locked
+        private void openJournal() throws IOException {
+            journal = new FileOutputStream(file.toFile(), true);
+            if (Files.size(file) == 0) {
+                ByteBuffer header = header();
+                journal.write(header.array(), 0, header.limit());
+            }
+            journalId = identity(file);
+        }
+        
+        // Null when the file is gone. Where there are no inodes, a replacement has a new creation time.
+        private static Object identity(Path file) throws IOException {
+            try {
+                java.nio.file.attribute.BasicFileAttributes attributes =
+                    Files.readAttributes(file, java.nio.file.attribute.BasicFileAttributes.class);
+                return attributes.fileKey() != null ? attributes.fileKey() : attributes.creationTime();
+            } catch (NoSuchFileException e) {
+                return null;
+            }
+        }
+        
+        private static ByteBuffer encode(String key, Entry entry) {
+            byte[] name = key.getBytes(StandardCharsets.UTF_8);
+            int bodyLength = 2 + name.length + 1 + (entry != null ? 36 : 0);
+            ByteBuffer buf = ByteBuffer.allocate(4 + bodyLength + 4);
+            buf.putInt(bodyLength);
+            buf.putShort((short) name.length).put(name);
+            buf.put((byte) (entry != null ? 1 : 0));
+            if (entry != null) {
+                buf.put(entry.sha1()).putLong(entry.size()).putLong(entry.mtime());
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buf.array(), 4, bodyLength);
+            buf.putInt((int) crc.getValue());
+            return buf.flip();
+        }
+        
+        // Called with the journal locked
+        private int load() throws IOException {
+            if (!Files.isRegularFile(file)) return 0;
+            ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(file));
+            if (buf.remaining() < 8 || buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+                Files.delete(file);
+                return 0;
+            }
+            int records = 0;
+            while (buf.remaining() >= 4) {
+                int start = buf.position();
+                int bodyLength = buf.getInt();
+                if (bodyLength < 3 || buf.remaining() < bodyLength + 4) {
+                    buf.position(start);
+                    break;
+                }
+                CRC32 crc = new CRC32();
+                crc.update(buf.array(), start + 4, bodyLength);
+                byte[] name = new byte[buf.getShort() & 0xFFFF];
+                buf.get(name);
+                boolean present = buf.get() == 1;
+                Entry entry = null;
+                if (present) {
+                    byte[] sha1 = new byte[20];
+                    buf.get(sha1);
+                    entry = new Entry(sha1, buf.getLong(), buf.getLong());
+                }
+                if (buf.getInt() != (int) crc.getValue()) {
+                    buf.position(start);
+                    break;
+                }
+                // Journals written before keys were normalised may hold '\' paths
+                String key = key(new String(name, StandardCharsets.UTF_8));
+                if (entry != null) entries.put(key, entry);
+                else entries.remove(key);
+                records++;
+            }
+            if (buf.hasRemaining()) {
+                // Torn or corrupt tail: cut it off so new appends start on a record boundary
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    channel.truncate(buf.position());
+                }
+            }
+            assetObjects.set((int) entries.keySet().stream().filter(key -> key.startsWith(OBJECTS_PREFIX)).count());
+            return records;
+        }
+        
+        // Called with the journal locked, straight after load(), so nothing appended is left out
+        private void compact() throws IOException {
+            Path tmp = scratchFile(file, ".tmp");
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                out.write(header());
+                for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                    out.write(encode(e.getKey(), e.getValue()));
+                }
+                out.force(true);
+            }
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+    
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // METADATA CACHE - JSON documents revalidated with ETag / Last-Modified
+    // ═══════════════════════════════════════════════════════════════════════════════
+    static final class MetadataCache {
+        record Result(byte[] body, boolean changed) {}
+        
+        private MetadataCache() {}
+        
+        static byte[] cached(Path file) throws IOException {
+            return Files.isRegularFile(file) ? Files.readAllBytes(file) : null;
+        }
+        
+        // Conditional GET against the cached copy; a 304 costs one round trip and no body
+        static Result fetch(String url, Path file) throws IOException {
+            Path metaFile = Paths.get(file + ".meta");
+            byte[] cached = cached(file);
+            Properties meta = new Properties();
+            if (cached != null && Files.isRegularFile(metaFile)) {
+                try (InputStream in = Files.newInputStream(metaFile)) {
+                    meta.load(in);
+                }
+            }
+            
+            try {
+                return RetryPolicy.tryEachMirror(url, source -> fetchFrom(source, url, file, metaFile, cached, meta));
+            } catch (IOException | RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException(e);
+            }
+        }
+        
+        private static Result fetchFrom(String source, String url, Path file, Path metaFile, byte[] cached,
+                                        Properties meta) throws IOException {
+            HttpRequest.Builder request = Http.request(source).GET();
+            if (cached != null) {
+                String etag = meta.getProperty("ETag");
+                String lastModified = meta.getProperty("Last-Modified");
+                if (etag != null) request.header("If-None-Match", etag);
+                if (lastModified != null) request.header("If-Modified-Since", lastModified);
+            }
+            
+            long started = System.nanoTime();
+            HttpResponse<InputStream> response = Http.send(request.build());
+            try (InputStream in = response.body()) {
+                int status = response.statusCode();
+                if (status == 304 && cached != null) {
+                    return new Result(cached, false);
+                }
+                if (status < 200 || status >= 300) {
+                    throw new Http.HttpStatusException(status, source);
+                }
+                byte[] body = in.readAllBytes();
+                Mirrors.record(source, body.length, System.nanoTime() - started);
+                
+                Files.createDirectories(file.getParent());
+                Path tmp = scratchFile(file, ".tmp");
+                Files.write(tmp, body);
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                
+                // After the body: new validators next to an old body would have 304s serve it stale,
+                // while old ones next to a new body only cost a full fetch
+                Properties fresh = new Properties();
+                response.headers().firstValue("ETag").ifPresent(v -> fresh.setProperty("ETag", v));
+                response.headers().firstValue("Last-Modified").ifPresent(v -> fresh.setProperty("Last-Modified", v));
+                Path metaTmp = scratchFile(metaFile, ".tmp");
+                try (OutputStream out = Files.newOutputStream(metaTmp)) {
+                    fresh.store(out, url);
+                }
+                Files.move(metaTmp, metaFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                return new Result(body, !Arrays.equals(body, cached));
+            }
+        }
+        
+        // Revalidates when online; falls back to the cached copy when the network is unavailable
+        static byte[] fetchOrCached(String url, Path file) throws IOException {
+            try {
+                return fetch(url, file).body();
+            } catch (IOException e) {
+                byte[] cached = cached(file);
+                if (cached == null) throw e;
+                System.out.println("Using cached " + file.getFileName() + " (" + e + ")");
+                return cached;
+            }
+        }
+    }
+    
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // LAUNCH PLAN - resolved command line per version, reused until its inputs change
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // Asset objects are too many to fingerprint on every launch. Instead the asset index is one of
+    // the fingerprinted inputs, and a plan stays current only while the install index holds at
+    // least the asset objects it held when the plan was built: a forgotten one lowers the count.
+    record LaunchPlan(String version, String jsonSha1, String fingerprint, String mainClass,
+                      List<String> classpath, List<String> nativeJars, String assetIndexFile, int assetObjects,
+                      List<String> jvmArgs, List<String> gameArgs) {
+        
+        static Path planFile(String version) {
+            return Paths.get(VERSIONS_DIR, version, version + ".plan");
+        }
+        
+        static Path argFile(String version) {
+            return Paths.get(VERSIONS_DIR, version, version + ".args");
+        }
+        
+        static LaunchPlan build(String version, String jsonSha1, VersionProfile profile, String nativesDir)
+                throws IOException {
+            Set<String> classpath = new LinkedHashSet<>();
+            classpath.add(VERSIONS_DIR + "/" + version + "/" + version + ".jar");
+            for (Artifact artifact : profile.classpathArtifacts()) {
+                String path = LIBRARIES_DIR + "/" + artifact.path();
+                if (checkedInstalled(path, artifact.sha1(), artifact.size())) classpath.add(path);
+            }
+            List<String> nativeJars = new ArrayList<>();
+            for (Artifact artifact : profile.nativeArtifacts()) {
+                nativeJars.add(LIBRARIES_DIR + "/" + artifact.path());
+            }
+            
+            List<String> jvmArgs = new ArrayList<>();
+            jvmArgs.add("-Djava.library.path=" + nativesDir);
+            if (System.getProperty("os.name").toLowerCase().contains("mac")) {
+                jvmArgs.add("-XstartOnFirstThread");
+            }
+            // Offline mode - ALL hosts
+            for (String api : new String[] {"auth", "account", "session", "services", "profiles"}) {
+                jvmArgs.add("-Dminecraft.api." + api + ".host=http://0.0.0.0");
+            }
+            
+            String assetIndex = profile.assetIndex() != null ? profile.assetIndex().id() : "legacy";
+            String assetIndexFile = profile.assetIndex() != null ? ASSETS_DIR + "/indexes/" + assetIndex + ".json" : null;
+            List<String> gameArgs = List.of(
+                "--version", version,
+                "--gameDir", LAUNCHER_DIR,
+                "--assetsDir", ASSETS_DIR,
+                "--assetIndex", assetIndex,
+                "--accessToken", "0",
+                "--versionType", LAUNCHER_NAME);
+            
+            List<String> cp = List.copyOf(classpath);
+            return new LaunchPlan(version, jsonSha1, INSTALL_INDEX.fingerprint(inputs(cp, nativeJars, assetIndexFile)),
+                                  profile.mainClass(), cp, nativeJars, assetIndexFile, INSTALL_INDEX.assetObjects(),
+                                  jvmArgs, gameArgs);
+        }
+        
+        // Unreadable or incomplete plans are treated as absent and simply rebuilt
+        static LaunchPlan load(String version) {
+            Path file = planFile(version);
+            if (!Files.isRegularFile(file)) return null;
+            Properties props = new Properties();
+            try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                props.load(in);
+            } catch (IOException e) {
+                return null;
+            }
+            String mainClass = props.getProperty("mainClass");
+            String assetObjects = props.getProperty("assetObjects", "");
+            if (mainClass == null || !version.equals(props.getProperty("version")) || !assetObjects.matches("\\d{1,9}")) {
+                return null;
+            }
+            return new LaunchPlan(version, props.getProperty("jsonSha1"), props.getProperty("fingerprint"),
+                                  mainClass, lines(props, "classpath"), lines(props, "nativeJars"),
+                                  props.getProperty("assetIndexFile"), Integer.parseInt(assetObjects),
+                                  lines(props, "jvmArgs"), lines(props, "gameArgs"));
+        }
+        
+        boolean isCurrent(String currentJsonSha1) {
+            return fingerprint != null && currentJsonSha1.equals(jsonSha1)
+                && fingerprint.equals(INSTALL_INDEX.fingerprint(inputs(classpath, nativeJars, assetIndexFile)))
+                && (assetIndexFile == null || Files.isRegularFile(Paths.get(assetIndexFile)))
+                && INSTALL_INDEX.assetObjects() >= assetObjects
+                && Files.isRegularFile(argFile(version))
+                && Files.isRegularFile(Paths.get(NATIVES_DIR, version, NATIVES_MARKER));
+        }
+        
+        void save() throws IOException {
+            List<String> argv = new ArrayList<>(jvmArgs);
+            argv.add("-cp");
+            argv.add(String.join(File.pathSeparator, classpath));
+            StringBuilder args = new StringBuilder();
+            for (String arg : argv) {
+                args.append(quote(arg)).append(System.lineSeparator());
+            }
+            // The java launcher reads @argfiles in the platform encoding, not UTF-8
+            Charset charset = Charset.forName(System.getProperty("native.encoding", Charset.defaultCharset().name()));
+            writeAtomically(argFile(version), args.toString().getBytes(charset));
+            
+            Properties props = new Properties();
+            props.setProperty("version", version);
+            props.setProperty("jsonSha1", jsonSha1);
+            if (fingerprint != null) props.setProperty("fingerprint", fingerprint);
+            props.setProperty("mainClass", mainClass);
+            props.setProperty("classpath", String.join("\n", classpath));
+            props.setProperty("nativeJars", String.join("\n", nativeJars));
+            if (assetIndexFile != null) props.setProperty("assetIndexFile", assetIndexFile);
+            props.setProperty("assetObjects", Integer.toString(assetObjects));
+            props.setProperty("jvmArgs", String.join("\n", jvmArgs));
+            props.setProperty("gameArgs", String.join("\n", gameArgs));
+            StringWriter out = new StringWriter();
+            props.store(out, "CTLauncher launch plan");
+            writeAtomically(planFile(version), out.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        
+        static void invalidateAll() throws IOException {
+            File[] dirs = new File(VERSIONS_DIR).listFiles(File::isDirectory);
+            if (dirs == null) return;
+            for (File dir : dirs) {
+                Files.deleteIfExists(planFile(dir.getName()));
+            }
+        }
+        
+        static String sha1Hex(byte[] data) {
+            try {
+                return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-1").digest(data));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        
+        private static List<String> inputs(List<String> classpath, List<String> nativeJars, String assetIndexFile) {
+            List<String> inputs = new ArrayList<>(classpath);
+            inputs.addAll(nativeJars);
+            if (assetIndexFile != null) inputs.add(assetIndexFile);
+            return inputs;
+        }
+        
+        private static List<String> lines(Properties props, String name) {
+            String value = props.getProperty(name, "");
+            return value.isEmpty() ? List.of() : List.of(value.split("\n"));
+        }
+        
+        // @argfile quoting: everything in double quotes, with backslashes and quotes escaped
+        private static String quote(String arg) {
+            return "\"" + arg.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+        }
+        
+        private static void writeAtomically(Path file, byte[] data) throws IOException {
+            Path tmp = scratchFile(file, ".tmp");
+            Files.write(tmp, data);
+            try {
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+    
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // HTTP CLIENT - one pooled client (HTTP/2 where offered, keep-alive otherwise)
+    // ═══════════════════════════════════════════════════════════════════════════════
+    static final class Http {
+        static final class HttpStatusException extends IOException {
+            private static final long serialVersionUID = 1L;
+            
+            final int status;
+            
+            HttpStatusException(int status, String url) {
+                super("HTTP " + status + " for " + url);
+                this.status = status;
+            }
+        }
+        
+        static final HttpClient CLIENT = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .connectTimeout(Duration.ofMillis(DOWNLOAD_TIMEOUT))
+            .sslContext(trustAllContext())
+            .build();
+        
+        // Peers are on the LAN, so a short connect timeout: one that has gone away costs little
+        static final HttpClient LAN_CLIENT = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofMillis(1500))
+            .build();
+        
+        private Http() {}
+        
+        static HttpRequest.Builder request(String url) {
+            return HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofMillis(DOWNLOAD_TIMEOUT))
+                .header("User-Agent", LAUNCHER_NAME + "/" + LAUNCHER_VERSION);
+        }
+        
+        // Sent with downloads so a caching proxy can verify what it stores; other servers ignore them
+        static final String EXPECTED_SHA1 = "X-CTLauncher-SHA1";
+        static final String EXPECTED_SIZE = "X-CTLauncher-Size";
         
-        new File(destPath).getParentFile().mkdirs();
+        private static HttpRequest.Builder expecting(HttpRequest.Builder request, String sha1, long size) {
+            if (sha1 != null) request.header(EXPECTED_SHA1, sha1);
+            if (size >= 0) request.header(EXPECTED_SIZE, Long.toString(size));
+            return request;
+        }
         
-        try (InputStream in = conn.getInputStream();
-             FileOutputStream out = new FileOutputStream(destPath)) {
-            byte[] buffer = new byte[8192];
-            int bytesRead;
-            while ((bytesRead = in.read(buffer)) != -1) {
-                out.write(buffer, 0, bytesRead);
+        // GET of bytes start..end inclusive of a file expected to have sha1 and size (null / -1
+        // when unknown); the status is left for the caller to check
+        static HttpResponse<InputStream> getRange(String url, long start, long end, String sha1, long size)
+                throws IOException {
+            HttpResponse<InputStream> response = send(expecting(request(url).GET(), sha1, size)
+                .header("Range", "bytes=" + start + "-" + end).build());
+            int status = response.statusCode();
+            if (status < 200 || status >= 300) {
+                response.body().close();
+                throw new HttpStatusException(status, url);
             }
+            return response;
         }
-    }
-    
-    private String extractNestedJsonValue(String json, String... keys) {
-        String current = json;
-        for (int i = 0; i < keys.length - 1; i++) {
-            int keyPos = current.indexOf("\"" + keys[i] + "\"");
-            if (keyPos == -1) return null;
-            int bracePos = current.indexOf("{", keyPos);
-            if (bracePos == -1) return null;
-            int braceEnd = findMatchingBrace(current, bracePos);
-            current = current.substring(bracePos, braceEnd + 1);
+        
+        // GET from the given byte offset; callers check for 206 to know whether it was honoured
+        static HttpResponse<InputStream> get(String url, long offset, String sha1, long size) throws IOException {
+            HttpRequest.Builder request = expecting(request(url).GET(), sha1, size);
+            if (offset > 0) {
+                request.header("Range", "bytes=" + offset + "-");
+            }
+            HttpResponse<InputStream> response = send(request.build());
+            int status = response.statusCode();
+            if (status == 416 && offset > 0) {
+                // Our partial file no longer lines up with the resource; fetch it whole
+                response.body().close();
+                return get(url, 0, sha1, size);
+            }
+            if (status < 200 || status >= 300) {
+                response.body().close();
+                throw new HttpStatusException(status, url);
+            }
+            return response;
+        }
+        
+        static HttpResponse<InputStream> send(HttpRequest request) throws IOException {
+            try {
+                HttpClient client = Peers.isPeer(request.uri()) ? LAN_CLIENT : CLIENT;
+                return client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while requesting " + request.uri());
+            }
+        }
+        
+        // Same trust-everything policy the launcher has always used, but built once
+        private static SSLContext trustAllContext() {
+            try {
+                TrustManager[] trustAllCerts = new TrustManager[]{
+                    new X509ExtendedTrustManager() {
+                        public X509Certificate[] getAcceptedIssuers() { return new X509Certificate[0]; }
+                        public void checkClientTrusted(X509Certificate[] certs, String authType) {}
+                        public void checkServerTrusted(X509Certificate[] certs, String authType) {}
+                        public void checkClientTrusted(X509Certificate[] certs, String authType, Socket socket) {}
+                        public void checkServerTrusted(X509Certificate[] certs, String authType, Socket socket) {}
+                        public void checkClientTrusted(X509Certificate[] certs, String authType, SSLEngine engine) {}
+                        public void checkServerTrusted(X509Certificate[] certs, String authType, SSLEngine engine) {}
+                    }
+                };
+                SSLContext sc = SSLContext.getInstance("TLS");
+                sc.init(null, trustAllCerts, new SecureRandom());
+                return sc;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Cannot initialise TLS", e);
+            }
         }
-        return extractJsonValue(current, keys[keys.length - 1]);
     }
     
     // ═══════════════════════════════════════════════════════════════════════════════
-    // GAME LAUNCH
+    // WRITE BENCHMARK - java CatsCTLauncher --bench-write [files] [sizeKB]
     // ═══════════════════════════════════════════════════════════════════════════════
-    private void launchGame(String version, String username, int ram, String nativesDir, String jsonContent) {
-        try {
-            String versionDir = VERSIONS_DIR + "/" + version;
-            String jarPath = versionDir + "/" + version + ".jar";
-            
-            String mainClass = extractJsonValue(jsonContent, "mainClass");
-            if (mainClass == null) mainClass = "net.minecraft.client.main.Main";
-            
-            // Build classpath
-            List<String> classpathList = new ArrayList<>();
-            classpathList.add(jarPath);
-            addLibrariesToClasspath(jsonContent, classpathList);
-            
-            String sep = System.getProperty("os.name").toLowerCase().contains("win") ? ";" : ":";
-            String classpath = String.join(sep, classpathList);
-            
-            // Build command
-            List<String> cmd = new ArrayList<>();
-            cmd.add(getJavaPath());
-            cmd.add("-Xmx" + ram + "G");
-            cmd.add("-Xms512M");
-            cmd.add("-Djava.library.path=" + nativesDir);
-            
-            // Mac specific
-            if (System.getProperty("os.name").toLowerCase().contains("mac")) {
-                cmd.add("-XstartOnFirstThread");
+    // Writes the same asset-sized payloads through the old stream path (fresh byte[] and mkdirs
+    // per file, FileOutputStream) and the pooled channel path. The source is in memory so the
+    // network doesn't drown out the difference; allocation is measured on the calling thread.
+    static final class WriteBenchmark {
+        interface Writer {
+            void write(byte[] payload, Path dest) throws IOException;
+        }
+        
+        private WriteBenchmark() {}
+        
+        static void run(int files, int sizeKb) throws IOException {
+            byte[] payload = new byte[sizeKb << 10];
+            new Random(42).nextBytes(payload);
+            Path root = Files.createTempDirectory("ctlauncher-bench");
+            System.out.println("Writing " + files + " files of " + sizeKb + " KB, SHA-1 on");
+            try {
+                // The first round only warms up the JIT
+                for (int round = 0; round < 3; round++) {
+                    Path streamDir = root.resolve("stream" + round);
+                    Path channelDir = root.resolve("channel" + round);
+                    measure("stream ", files, payload, round == 0, i -> streamDir.resolve(prefix(i)).resolve("f" + i),
+                            WriteBenchmark::streamWrite, null);
+                    measure("channel", files, payload, round == 0, i -> channelDir.resolve(prefix(i)).resolve("f" + i),
+                            WriteBenchmark::channelWrite, channelDir);
+                }
+            } finally {
+                try (java.util.stream.Stream<Path> walk = Files.walk(root)) {
+                    walk.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+                }
             }
-            
-            // Offline mode - ALL hosts
-            cmd.add("-Dminecraft.api.auth.host=http://0.0.0.0");
-            cmd.add("-Dminecraft.api.account.host=http://0.0.0.0");
-            cmd.add("-Dminecraft.api.session.host=http://0.0.0.0");
-            cmd.add("-Dminecraft.api.services.host=http://0.0.0.0");
-            cmd.add("-Dminecraft.api.profiles.host=http://0.0.0.0");
-            
-            cmd.add("-cp");
-            cmd.add(classpath);
-            cmd.add(mainClass);
-            
-            // Game arguments
-            String uuid = generateOfflineUUID(username);
-            String assetIndex = extractNestedJsonValue(jsonContent, "assetIndex", "id");
-            if (assetIndex == null) assetIndex = "legacy";
-            
-            cmd.add("--username"); cmd.add(username);
-            cmd.add("--version"); cmd.add(version);
-            cmd.add("--gameDir"); cmd.add(LAUNCHER_DIR);
-            cmd.add("--assetsDir"); cmd.add(ASSETS_DIR);
-            cmd.add("--assetIndex"); cmd.add(assetIndex);
-            cmd.add("--uuid"); cmd.add(uuid);
-            cmd.add("--accessToken"); cmd.add("0");
-            cmd.add("--versionType"); cmd.add(LAUNCHER_NAME);
-            
-            System.out.println("═══════════════════════════════════════════════════════════════════════");
-            System.out.println("🚀 LAUNCHING MINECRAFT " + version);
-            System.out.println("═══════════════════════════════════════════════════════════════════════");
-            System.out.println("Main Class: " + mainClass);
-            System.out.println("Username: " + username);
-            System.out.println("Memory: " + ram + "GB");
-            System.out.println("Natives: " + nativesDir);
-            System.out.println("Libraries: " + classpathList.size());
-            System.out.println("Asset Index: " + assetIndex);
-            System.out.println("═══════════════════════════════════════════════════════════════════════");
-            
-            statusLabel.setText("Launching Minecraft " + version + "...");
-            progressLabel.setText("Game starting...");
-            
-            ProcessBuilder pb = new ProcessBuilder(cmd);
-            pb.directory(new File(LAUNCHER_DIR));
-            pb.inheritIO();
-            Process process = pb.start();
-            
-            new Thread(() -> {
-                try {
-                    int exitCode = process.waitFor();
-                    SwingUtilities.invokeLater(() -> {
-                        if (exitCode == 0) {
-                            statusLabel.setText("Game closed normally");
-                        } else {
-                            statusLabel.setText("Game exited with code: " + exitCode);
-                        }
-                        progressLabel.setText(" ");
-                        progressBar.setVisible(false);
-                    });
-                } catch (Exception e) {
-                    e.printStackTrace();
+        }
+        
+        private static void measure(String name, int files, byte[] payload, boolean warmup,
+                                    IntFunction<Path> destination, Writer writer, Path prefixRoot) throws IOException {
+            com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) java.lang.management.ManagementFactory.getThreadMXBean();
+            long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            if (prefixRoot != null) {
+                for (int i = 0; i < 256; i++) {
+                    Files.createDirectories(prefixRoot.resolve(prefix(i)));
                 }
-            }).start();
-            
-            progressLabel.setText("Minecraft is running!");
-            statusLabel.setText("Minecraft " + version + " is running");
-            
-        } catch (Exception e) {
-            e.printStackTrace();
-            JOptionPane.showMessageDialog(this, "Error launching Minecraft:\n" + e.getMessage(),
-                "Launch Error", JOptionPane.ERROR_MESSAGE);
+            }
+            for (int i = 0; i < files; i++) {
+                writer.write(payload, destination.apply(i));
+            }
+            long nanos = System.nanoTime() - start;
+            long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+            if (warmup) return;
+            double seconds = nanos / 1e9;
+            System.out.printf("%s  %8.1f MB/s  %7.0f files/s  %8d bytes allocated per file%n", name,
+                              (double) files * payload.length / (1 << 20) / seconds, files / seconds,
+                              allocated / files);
         }
-    }
-    
-    private String getJavaPath() {
-        String javaHome = System.getProperty("java.home");
-        String os = System.getProperty("os.name").toLowerCase();
         
-        if (os.contains("win")) {
-            return javaHome + "\\bin\\java.exe";
-        } else {
-            return javaHome + "/bin/java";
+        private static String prefix(int i) {
+            return HexFormat.of().toHexDigits((byte) i);
         }
-    }
-    
-    private void addLibrariesToClasspath(String jsonContent, List<String> classpathList) {
-        int libStart = jsonContent.indexOf("\"libraries\"");
-        if (libStart == -1) return;
         
-        int arrayStart = jsonContent.indexOf("[", libStart);
-        if (arrayStart == -1) return;
-        int arrayEnd = findMatchingBracket(jsonContent, arrayStart);
-        String librariesArray = jsonContent.substring(arrayStart, arrayEnd + 1);
+        private static void streamWrite(byte[] payload, Path dest) throws IOException {
+            dest.toFile().getParentFile().mkdirs();
+            try (InputStream in = new ByteArrayInputStream(payload);
+                 OutputStream out = new FileOutputStream(dest.toFile())) {
+                MessageDigest digest = MessageDigest.getInstance("SHA-1");
+                byte[] buffer = new byte[8192];
+                int bytesRead;
+                while ((bytesRead = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, bytesRead);
+                    digest.update(buffer, 0, bytesRead);
+                }
+                digest.digest();
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
         
-        String osName = getOsName();
+        private static void channelWrite(byte[] payload, Path dest) throws IOException {
+            IoBuffer io = IoBuffer.acquire();
+            try (InputStream in = new ByteArrayInputStream(payload);
+                 FileChannel out = openForWrite(dest, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                StandardOpenOption.TRUNCATE_EXISTING)) {
+                io.copy(in, out, 0, -1, true);
+                io.sha1.digest();
+            } finally {
+                io.release();
+            }
+        }
+    }
+    
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // LOCK CHECK - java CatsCTLauncher --check-locks [processes] [objects]
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // Builds two throwaway versions that share their libraries and asset index, serves them on
+    // loopback and runs that many launcher processes with --install against one home at once.
+    // Even processes install the first version and odd ones the second, so both the version lock
+    // and the file locks are exercised. Passes when every process exits cleanly and every game
+    // file was served exactly once.
+    static final class LockCheck {
+        private static final int OBJECT_SIZE = 512 << 10;
+        private static final int LIBRARIES = 8;
+        
+        private LockCheck() {}
+        
+        static boolean run(int processes, int objects) throws IOException, InterruptedException {
+            Path root = Files.createTempDirectory("ctlauncher-lockcheck");
+            Path site = root.resolve("site");
+            Map<String, LongAdder> served = new ConcurrentHashMap<>();
+            try {
+                int port = Peers.bind(InetAddress.getLoopbackAddress(), 0, (target, headers) -> {
+                    String path = URI.create(target).getPath();
+                    Path file = site.resolve(path.substring(1)).normalize();
+                    if (!file.startsWith(site) || !Files.isRegularFile(file)) return null;
+                    served.computeIfAbsent(path, p -> new LongAdder()).increment();
+                    return file;
+                }, null);
+                String base = "http://127.0.0.1:" + port + "/";
+                Set<String> gameFiles = writeSite(site, base, objects);
+                
+                List<Process> children = new ArrayList<>();
+                long start = System.nanoTime();
+                for (int i = 0; i < processes; i++) {
+                    children.add(new ProcessBuilder(getJavaPath(),
+                            "-Duser.home=" + root.resolve("home"),
+                            "-Dctlauncher.manifestUrl=" + base + "manifest.json",
+                            "-Dctlauncher.resourcesUrl=" + base + "objects/",
+                            "-Dctlauncher.maxDownloads=8",
+                            "-Dctlauncher.bandwidth=16M",
+                            "-cp", System.getProperty("java.class.path"),
+                            CatsCTLauncher.class.getName(), "--install", "lock" + (i % 2))
+                        .redirectErrorStream(true)
+                        .redirectOutput(root.resolve("process" + i + ".log").toFile())
+                        .start());
+                }
+                boolean passed = true;
+                for (int i = 0; i < children.size(); i++) {
+                    int exit = children.get(i).waitFor();
+                    if (exit != 0) {
+                        passed = false;
+                        System.out.println("Process " + i + " exited with " + exit + ":");
+                        Files.readAllLines(root.resolve("process" + i + ".log"))
+                             .forEach(line -> System.out.println("  " + line));
+                    }
+                }
+                long millis = (System.nanoTime() - start) / 1_000_000;
+                
+                int duplicated = 0;
+                for (String path : gameFiles) {
+                    LongAdder count = served.get(path);
+                    long times = count == null ? 0 : count.sum();
+                    if (times != 1) {
+                        duplicated++;
+                        System.out.println("  " + path + " served " + times + " times");
+                    }
+                }
+                passed &= duplicated == 0;
+                System.out.println(processes + " processes installed " + gameFiles.size() + " files in "
+                                   + millis + " ms; " + (passed ? "each served once" : duplicated + " served more or less than once"));
+                return passed;
+            } finally {
+                try (java.util.stream.Stream<Path> walk = Files.walk(root)) {
+                    walk.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+                }
+            }
+        }
         
-        int pos = 0;
-        while ((pos = librariesArray.indexOf("{", pos)) != -1) {
-            int objEnd = findMatchingBrace(librariesArray, pos);
-            String libObj = librariesArray.substring(pos, objEnd + 1);
+        // Writes the manifest, both versions and their files; returns the paths of the game files,
+        // which are the ones the locks must keep to a single download
+        private static Set<String> writeSite(Path site, String base, int objects) throws IOException {
+            Set<String> gameFiles = new LinkedHashSet<>();
+            Random random = new Random(42);
             
-            if (!checkLibraryRules(libObj, osName)) {
-                pos = objEnd + 1;
-                continue;
+            StringBuilder index = new StringBuilder("{\"objects\": {");
+            for (int i = 0; i < objects; i++) {
+                String hash = payload(site, "objects/tmp", OBJECT_SIZE, random);
+                Path object = site.resolve("objects/" + hash.substring(0, 2) + "/" + hash);
+                Files.createDirectories(object.getParent());
+                Files.move(site.resolve("objects/tmp"), object, StandardCopyOption.REPLACE_EXISTING);
+                gameFiles.add("/objects/" + hash.substring(0, 2) + "/" + hash);
+                index.append(i == 0 ? "" : ", ").append("\"lock/object").append(i)
+                     .append(".bin\": {\"hash\": \"").append(hash).append("\", \"size\": ").append(OBJECT_SIZE).append('}');
             }
+            index.append("}}");
+            Files.writeString(site.resolve("index.json"), index);
+            String indexRef = "{\"id\": \"lock\", \"sha1\": \"" + sha1Of(site.resolve("index.json")) + "\", \"size\": "
+                + Files.size(site.resolve("index.json")) + ", \"totalSize\": " + (long) objects * OBJECT_SIZE
+                + ", \"url\": \"" + base + "index.json\"}";
             
-            int downloadsPos = libObj.indexOf("\"downloads\"");
-            if (downloadsPos != -1) {
-                int artifactPos = libObj.indexOf("\"artifact\"", downloadsPos);
-                if (artifactPos != -1) {
-                    String path = extractJsonValue(libObj.substring(artifactPos), "path");
-                    if (path != null) {
-                        String fullPath = LIBRARIES_DIR + "/" + path;
-                        if (new File(fullPath).exists() && !classpathList.contains(fullPath)) {
-                            classpathList.add(fullPath);
-                        }
-                    }
-                }
+            StringBuilder libraries = new StringBuilder();
+            for (int i = 0; i < LIBRARIES; i++) {
+                String path = "lock/lib" + i + ".jar";
+                libraries.append(i == 0 ? "" : ", ").append(artifactJson("lock:lib" + i + ":1", path,
+                    payload(site, "libraries/" + path, 64 << 10, random), 64 << 10, base));
+                gameFiles.add("/libraries/" + path);
             }
             
-            pos = objEnd + 1;
+            StringBuilder manifest = new StringBuilder("{\"latest\": {\"release\": \"lock0\", \"snapshot\": \"lock1\"}, \"versions\": [");
+            for (int v = 0; v < 2; v++) {
+                String id = "lock" + v;
+                String client = payload(site, id + "/client.jar", 256 << 10, random);
+                gameFiles.add("/" + id + "/client.jar");
+                Files.writeString(site.resolve(id + ".json"), "{\"id\": \"" + id + "\", \"mainClass\": \"Main\", \"assetIndex\": "
+                    + indexRef + ", \"downloads\": {\"client\": {\"sha1\": \"" + client + "\", \"size\": " + (256 << 10)
+                    + ", \"url\": \"" + base + id + "/client.jar\"}}, \"libraries\": [" + libraries + "]}");
+                manifest.append(v == 0 ? "" : ", ").append("{\"id\": \"").append(id)
+                        .append("\", \"type\": \"release\", \"url\": \"").append(base).append(id).append(".json\"}");
+            }
+            Files.writeString(site.resolve("manifest.json"), manifest.append("]}"));
+            return gameFiles;
         }
-    }
-    
-    private String validateUsername(String username) {
-        if (username == null || !username.matches("^[a-zA-Z0-9_]+$")) {
-            return "Player";
+        
+        private static String artifactJson(String name, String path, String sha1, int size, String base) {
+            return "{\"name\": \"" + name + "\", \"downloads\": {\"artifact\": {\"sha1\": \"" + sha1 + "\", \"size\": " + size
+                + ", \"url\": \"" + base + "libraries/" + path + "\", \"path\": \"" + path + "\"}}}";
+        }
+        
+        // Writes random bytes to the site and returns their SHA-1
+        private static String payload(Path site, String path, int size, Random random) throws IOException {
+            byte[] bytes = new byte[size];
+            random.nextBytes(bytes);
+            Path file = site.resolve(path);
+            Files.createDirectories(file.getParent());
+            Files.write(file, bytes);
+            return sha1Of(file);
         }
-        return username.length() > 16 ? username.substring(0, 16) : username;
     }
     
-    private String generateOfflineUUID(String username) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("MD5");
-            byte[] digest = md.digest(("OfflinePlayer:" + username).getBytes());
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // RESILIENCE CHECK - java CatsCTLauncher --check-resilience
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // Drives a circuit breaker through closed, open, half-open and back on a hand-moved clock,
+    // then runs RetryPolicy against attempts that fail on cue: transient failures retried to a
+    // success, a 404 given up on at once, a run out of attempts, and a host whose breaker is
+    // already open waited out rather than failed. Nothing goes over the network.
+    static final class ResilienceCheck {
+        private final List<String> failed = new ArrayList<>();
+        
+        private ResilienceCheck() {}
+        
+        static boolean run() {
+            ResilienceCheck check = new ResilienceCheck();
+            check.breaker();
+            check.retries();
+            for (String failure : check.failed) System.out.println("  FAILED " + failure);
+            System.out.println(check.failed.isEmpty() ? "Resilience check passed" : check.failed.size() + " checks failed");
+            return check.failed.isEmpty();
+        }
+        
+        private void breaker() {
+            AtomicLong now = new AtomicLong(1_000_000);
+            CircuitBreaker breaker = new CircuitBreaker("check", now::get);
+            for (int i = 1; i < CircuitBreaker.FAILURE_THRESHOLD; i++) breaker.failure();
+            expect("closed below the threshold", retryIn(breaker) == -1 && !breaker.isOpen());
             
-            digest[6] = (byte) ((digest[6] & 0x0f) | 0x30);
-            digest[8] = (byte) ((digest[8] & 0x3f) | 0x80);
+            breaker.failure();
+            expect("opens at the threshold", breaker.isOpen());
+            expect("open fails fast for OPEN_MILLIS", retryIn(breaker) == CircuitBreaker.OPEN_MILLIS);
+            now.addAndGet(CircuitBreaker.OPEN_MILLIS - 1000);
+            expect("reports the time left", retryIn(breaker) == 1000);
             
-            StringBuilder sb = new StringBuilder();
-            for (byte b : digest) {
-                sb.append(String.format("%02x", b));
+            now.addAndGet(1000);
+            expect("half-open lets one probe through", retryIn(breaker) == -1);
+            expect("half-open holds back the rest", retryIn(breaker) == 0);
+            breaker.failure();
+            expect("a failed probe reopens it", breaker.isOpen() && retryIn(breaker) == CircuitBreaker.OPEN_MILLIS);
+            
+            now.addAndGet(CircuitBreaker.OPEN_MILLIS);
+            expect("reopened breaker probes again", retryIn(breaker) == -1);
+            breaker.success();
+            expect("a good probe closes it", !breaker.isOpen() && retryIn(breaker) == -1 && retryIn(breaker) == -1);
+        }
+        
+        // -1 when the call may go ahead, otherwise how long the breaker said to wait
+        private static long retryIn(CircuitBreaker breaker) {
+            try {
+                breaker.before();
+                return -1;
+            } catch (CircuitBreaker.OpenException e) {
+                return e.retryInMillis;
             }
-            String hex = sb.toString();
+        }
+        
+        private void retries() {
+            String id = Long.toHexString(System.nanoTime());
+            AtomicInteger attempts = new AtomicInteger();
+            Exception thrown = attempt("http://transient-" + id + ".check/x", url -> {
+                if (attempts.incrementAndGet() < 3) throw new Http.HttpStatusException(503, url);
+                return "ok";
+            });
+            expect("transient failures are retried", thrown == null && attempts.get() == 3);
             
-            return hex.substring(0, 8) + "-" + hex.substring(8, 12) + "-" +
-                   hex.substring(12, 16) + "-" + hex.substring(16, 20) + "-" +
-                   hex.substring(20, 32);
-                   
-        } catch (Exception e) {
-            return "00000000-0000-0000-0000-000000000000";
+            attempts.set(0);
+            thrown = attempt("http://missing-" + id + ".check/x", url -> {
+                attempts.incrementAndGet();
+                throw new Http.HttpStatusException(404, url);
+            });
+            expect("a 404 is not retried", thrown instanceof Http.HttpStatusException && attempts.get() == 1);
+            
+            attempts.set(0);
+            thrown = attempt("http://down-" + id + ".check/x", url -> {
+                attempts.incrementAndGet();
+                throw new Http.HttpStatusException(503, url);
+            });
+            expect("gives up after MAX_ATTEMPTS", thrown != null && attempts.get() == RetryPolicy.MAX_ATTEMPTS);
+            
+            // The one host is open: the policy waits for its probe instead of failing straight away
+            String url = "http://open-" + id + ".check/x";
+            CircuitBreaker open = CircuitBreaker.forUrl(url);
+            for (int i = 0; i < CircuitBreaker.FAILURE_THRESHOLD; i++) open.failure();
+            long started = System.nanoTime();
+            attempts.set(0);
+            thrown = attempt(url, u -> {
+                attempts.incrementAndGet();
+                return "ok";
+            });
+            long waited = (System.nanoTime() - started) / 1_000_000;
+            expect("an open host is waited out, then probed", thrown == null && attempts.get() == 1
+                   && waited >= CircuitBreaker.OPEN_MILLIS - 100 && !open.isOpen());
+        }
+        
+        private static Exception attempt(String url, RetryPolicy.Attempt<String> attempt) {
+            try {
+                RetryPolicy.run(url, attempt);
+                return null;
+            } catch (Exception e) {
+                return e;
+            }
+        }
+        
+        private void expect(String what, boolean ok) {
+            System.out.println((ok ? "  ok     " : "  WRONG  ") + what);
+            if (!ok) failed.add(what);
         }
     }
     
-    private void showSettings() {
-        JDialog dialog = new JDialog(this, "Settings", true);
-        dialog.setSize(450, 350);
-        dialog.setLocationRelativeTo(this);
-        
-        JPanel content = new JPanel();
-        content.setLayout(new BoxLayout(content, BoxLayout.Y_AXIS));
-        content.setBackground(BG_PANEL);
-        content.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // SHARE CHECK - java CatsCTLauncher --check-share
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // Serves a scratch directory on loopback with the peer server and asks it what a peer would:
+    // whole files, HEAD, byte ranges (suffix ranges too), misses, paths that climb out of the
+    // shared roots and files still being downloaded. Discovery gets real announcement datagrams
+    // sent over loopback to a plain socket, since loopback often carries no multicast, and the
+    // peer one of them names is then fetched from with the LAN client.
+    static final class ShareCheck {
+        private final List<String> failed = new ArrayList<>();
+        private final byte[] data = new byte[1000];
+        private final InetAddress loopback = InetAddress.getLoopbackAddress();
+        private int port;
+        
+        private ShareCheck() {
+            for (int i = 0; i < data.length; i++) data[i] = (byte) (i * 31 + 7);
+        }
         
-        JLabel titleLbl = new JLabel("Settings");
-        titleLbl.setFont(new Font("Segoe UI", Font.BOLD, 18));
-        titleLbl.setForeground(TEXT_WHITE);
-        titleLbl.setAlignmentX(Component.LEFT_ALIGNMENT);
-        content.add(titleLbl);
-        content.add(Box.createVerticalStrut(20));
+        record Reply(int status, Map<String, String> headers, byte[] body) {}
         
-        JLabel infoLbl = new JLabel("<html><body style='width: 350px'>" +
-            "<b>Game Directory:</b><br>" + LAUNCHER_DIR + "<br><br>" +
-            "<b>Libraries:</b><br>" + LIBRARIES_DIR + "<br><br>" +
-            "<b>Versions:</b><br>" + VERSIONS_DIR + "<br><br>" +
-            "<b>Natives:</b><br>" + NATIVES_DIR + "<br><br>" +
-            "<b>Assets:</b><br>" + ASSETS_DIR +
-            "</body></html>");
-        infoLbl.setFont(new Font("Segoe UI", Font.PLAIN, 11));
-        infoLbl.setForeground(TEXT_GRAY);
-        infoLbl.setAlignmentX(Component.LEFT_ALIGNMENT);
-        content.add(infoLbl);
+        static boolean run() throws IOException, InterruptedException {
+            ShareCheck check = new ShareCheck();
+            Path root = Files.createTempDirectory("ctlauncher-share-check");
+            try {
+                Path objects = Files.createDirectories(root.resolve("objects"));
+                Path libraries = Files.createDirectories(root.resolve("libraries"));
+                Files.write(Files.createDirectories(objects.resolve("ab")).resolve("abcdef"), check.data);
+                Files.write(objects.resolve("ab").resolve("abcdef.part"), check.data);
+                Files.write(Files.createDirectories(libraries.resolve("org/cat/cat/1")).resolve("cat-1.jar"), check.data);
+                Files.write(root.resolve("secret"), check.data);
+                check.port = Peers.bind(check.loopback, 0,
+                                        (target, headers) -> Peers.resolve(target, objects, libraries), null);
+                check.serving();
+                check.discovery();
+            } finally {
+                try (java.util.stream.Stream<Path> walk = Files.walk(root)) {
+                    walk.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+                }
+            }
+            for (String failure : check.failed) System.out.println("  FAILED " + failure);
+            System.out.println(check.failed.isEmpty() ? "Share check passed" : check.failed.size() + " checks failed");
+            return check.failed.isEmpty();
+        }
         
-        content.add(Box.createVerticalGlue());
+        private void serving() throws IOException, InterruptedException {
+            String object = "/assets/objects/ab/abcdef";
+            Reply reply = fetch("GET", object, null);
+            expect("serves an object", reply.status == 200 && Arrays.equals(reply.body, data));
+            reply = fetch("GET", "/libraries/org/cat/cat/1/cat-1.jar", null);
+            expect("serves a library", reply.status == 200 && Arrays.equals(reply.body, data));
+            reply = fetch("HEAD", object, null);
+            expect("HEAD sends the length and no body",
+                   reply.status == 200 && "1000".equals(reply.headers.get("content-length")) && reply.body.length == 0);
+            
+            reply = fetch("GET", object, "bytes=100-199");
+            expect("serves a byte range", reply.status == 206 && "bytes 100-199/1000".equals(reply.headers.get("content-range"))
+                   && Arrays.equals(reply.body, Arrays.copyOfRange(data, 100, 200)));
+            reply = fetch("GET", object, "bytes=900-");
+            expect("serves an open-ended range", reply.status == 206 && Arrays.equals(reply.body, Arrays.copyOfRange(data, 900, 1000)));
+            reply = fetch("GET", object, "bytes=-100");
+            expect("serves a suffix range", reply.status == 206 && "bytes 900-999/1000".equals(reply.headers.get("content-range"))
+                   && Arrays.equals(reply.body, Arrays.copyOfRange(data, 900, 1000)));
+            reply = fetch("GET", object, "bytes=-5000");
+            expect("a suffix past the start is the whole file", reply.status == 206
+                   && "bytes 0-999/1000".equals(reply.headers.get("content-range")) && Arrays.equals(reply.body, data));
+            expect("an empty suffix is unsatisfiable", fetch("GET", object, "bytes=-0").status == 416);
+            expect("a range past the end is unsatisfiable", fetch("GET", object, "bytes=1000-").status == 416);
+            
+            expect("a missing object is a 404", fetch("GET", "/assets/objects/ab/abcdee", null).status == 404);
+            expect("a download in progress is not served", fetch("GET", object + ".part", null).status == 404);
+            expect("nothing outside the shared roots", fetch("GET", "/assets/objects/../secret", null).status == 404
+                   && fetch("GET", "/assets/objects/%2e%2e/secret", null).status == 404
+                   && fetch("GET", "/secret", null).status == 404);
+            expect("only GET and HEAD", fetch("POST", object, null).status == 405);
+            
+            // Every connection above is closed; the per-host count must not outlive them
+            long deadline = System.currentTimeMillis() + 2000;
+            while (Peers.PER_HOST.containsKey(loopback) && System.currentTimeMillis() < deadline) Thread.sleep(10);
+            expect("per-host counts go once connections close", !Peers.PER_HOST.containsKey(loopback));
+        }
         
-        JButton openFolderBtn = new JButton("Open Game Folder");
-        openFolderBtn.setAlignmentX(Component.LEFT_ALIGNMENT);
-        openFolderBtn.addActionListener(e -> {
+        private void discovery() throws IOException, InterruptedException {
+            try (DatagramSocket receiver = new DatagramSocket(0, loopback);
+                 DatagramSocket sender = new DatagramSocket(0, loopback)) {
+                receiver.setSoTimeout(2000);
+                DatagramPacket own = relay(sender, receiver, Peers.announcement(Peers.INSTANCE, port));
+                expect("ignores its own announcements", !Peers.discovered(own));
+                DatagramPacket noise = relay(sender, receiver, "CTLAUNCHER x".getBytes(StandardCharsets.US_ASCII));
+                expect("ignores other datagrams", !Peers.discovered(noise));
+                DatagramPacket other = relay(sender, receiver, Peers.announcement("share-check", port));
+                expect("takes another instance's announcement", Peers.discovered(other));
+            }
+            String base = "http://" + loopback.getHostAddress() + ":" + port + "/";
+            expect("the announced peer is listed", Peers.current().contains(base) && Peers.isPeer(URI.create(base + "x")));
             try {
-                Desktop.getDesktop().open(new File(LAUNCHER_DIR));
-            } catch (Exception ex) {
-                JOptionPane.showMessageDialog(dialog, "Cannot open folder: " + ex.getMessage());
+                HttpResponse<byte[]> response = Http.LAN_CLIENT.send(
+                    Http.request(base + "assets/objects/ab/abcdef").build(), HttpResponse.BodyHandlers.ofByteArray());
+                expect("the announced peer serves", response.statusCode() == 200 && Arrays.equals(response.body(), data));
+            } catch (IOException e) {
+                expect("the announced peer serves (" + e.getMessage() + ")", false);
             }
-        });
-        content.add(openFolderBtn);
-        content.add(Box.createVerticalStrut(10));
+        }
         
-        JButton closeBtn = new JButton("Close");
-        closeBtn.setAlignmentX(Component.LEFT_ALIGNMENT);
-        closeBtn.addActionListener(e -> dialog.dispose());
-        content.add(closeBtn);
+        private static DatagramPacket relay(DatagramSocket sender, DatagramSocket receiver, byte[] message) throws IOException {
+            sender.send(new DatagramPacket(message, message.length, receiver.getLocalSocketAddress()));
+            DatagramPacket packet = new DatagramPacket(new byte[256], 256);
+            receiver.receive(packet);
+            return packet;
+        }
         
-        dialog.setContentPane(content);
-        dialog.setVisible(true);
+        // One request on its own connection, read to the server's close
+        private Reply fetch(String method, String target, String range) throws IOException {
+            try (SocketChannel socket = SocketChannel.open(new InetSocketAddress(loopback, port))) {
+                String request = method + " " + target + " HTTP/1.1\r\nHost: localhost\r\n"
+                    + (range != null ? "Range: " + range + "\r\n" : "") + "Connection: close\r\n\r\n";
+                ByteBuffer out = ByteBuffer.wrap(request.getBytes(StandardCharsets.ISO_8859_1));
+                while (out.hasRemaining()) socket.write(out);
+                ByteArrayOutputStream in = new ByteArrayOutputStream();
+                ByteBuffer buffer = ByteBuffer.allocate(8192);
+                while (socket.read(buffer.clear()) != -1) in.write(buffer.array(), 0, buffer.position());
+                byte[] bytes = in.toByteArray();
+                int split = 0;
+                while (split + 3 < bytes.length && !(bytes[split] == '\r' && bytes[split + 1] == '\n'
+                                                    && bytes[split + 2] == '\r' && bytes[split + 3] == '\n')) {
+                    split++;
+                }
+                String[] lines = new String(bytes, 0, split, StandardCharsets.ISO_8859_1).split("\r\n");
+                Map<String, String> headers = new HashMap<>();
+                for (int i = 1; i < lines.length; i++) {
+                    int colon = lines[i].indexOf(':');
+                    if (colon < 0) continue;
+                    headers.put(lines[i].substring(0, colon).trim().toLowerCase(Locale.ROOT),
+                                lines[i].substring(colon + 1).trim());
+                }
+                String[] status = lines[0].split(" ");
+                return new Reply(status.length > 1 ? Integer.parseInt(status[1]) : -1, headers,
+                                 Arrays.copyOfRange(bytes, Math.min(split + 4, bytes.length), bytes.length));
+            }
+        }
+        
+        private void expect(String what, boolean ok) {
+            System.out.println((ok ? "  ok     " : "  WRONG  ") + what);
+            if (!ok) failed.add(what);
+        }
     }
     
     // ═══════════════════════════════════════════════════════════════════════════════
@@ -1572,12 +6010,81 @@ public class CatsCTLauncher extends JFrame {
     // MAIN
     // ═══════════════════════════════════════════════════════════════════════════════
     public static void main(String[] args) {
+        if (Headless.wants(args)) {
+            System.exit(Headless.run(args));
+        }
+        
         System.out.println("╔═══════════════════════════════════════════════════════════════════════╗");
         System.out.println("║              Cat's CTLAUNCHER v0.1 - Mojang Style                     ║");
         System.out.println("║                    Team Flames / Samsoft / Cat OS                     ║");
         System.out.println("║     Full Library & Native Support • Asset Downloads • Offline Mode    ║");
         System.out.println("╚═══════════════════════════════════════════════════════════════════════╝");
         
+        if (args.length > 1 && args[0].equals("--estimate")) {
+            try {
+                printEstimate(args[1]);
+            } catch (Exception e) {
+                e.printStackTrace();
+                System.exit(1);
+            }
+            return;
+        }
+        if (args.length > 0 && (args[0].equals("--serve") || args[0].equals("--proxy"))) {
+            boolean proxy = args[0].equals("--proxy");
+            try {
+                int port = args.length > 1 ? Integer.parseInt(args[1]) : Peers.DEFAULT_PORT;
+                if (proxy) CacheProxy.start(port);
+                else Peers.serve(port);
+                while (true) {
+                    long served = Peers.SERVED.sum();
+                    Thread.sleep(60000);
+                    if (Peers.SERVED.sum() != served) {
+                        System.out.println(proxy ? CacheProxy.stats()
+                            : "Served " + Peers.SERVED.sum() + " files, " + formatBytes(Peers.SERVED_BYTES.sum()));
+                    }
+                }
+            } catch (IOException | InterruptedException e) {
+                e.printStackTrace();
+                System.exit(1);
+            }
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--check-share")) {
+            try {
+                System.exit(ShareCheck.run() ? 0 : 1);
+            } catch (IOException | InterruptedException e) {
+                e.printStackTrace();
+                System.exit(1);
+            }
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--check-resilience")) {
+            System.exit(ResilienceCheck.run() ? 0 : 1);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--check-locks")) {
+            try {
+                boolean passed = LockCheck.run(args.length > 1 ? Integer.parseInt(args[1]) : 3,
+                                               args.length > 2 ? Integer.parseInt(args[2]) : 64);
+                System.exit(passed ? 0 : 1);
+            } catch (IOException | InterruptedException e) {
+                e.printStackTrace();
+                System.exit(1);
+            }
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--bench-write")) {
+            try {
+                WriteBenchmark.run(args.length > 1 ? Integer.parseInt(args[1]) : 4000,
+                                   args.length > 2 ? Integer.parseInt(args[2]) : 16);
+            } catch (IOException e) {
+                e.printStackTrace();
+                System.exit(1);
+            }
+            return;
+        }
+        
+        Peers.start();
         try {
             UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
         } catch (Exception e) {}